@@ -0,0 +1,174 @@
+package com.atlassian.labs.speakeasy;
+
+import com.atlassian.labs.speakeasy.model.CacheStatistics;
+import com.atlassian.labs.speakeasy.product.ProductAccessor;
+import com.atlassian.sal.api.user.UserProfile;
+import com.atlassian.sal.api.user.UserManager;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.google.common.collect.Maps.newHashMap;
+
+/**
+ * Caches the names of extension authors, as looking up users can be expensive, particularly against an external
+ * directory.  The cache is bounded, evicting the least recently used users first, and entries expire so changes to
+ * names are eventually picked up.
+ */
+public class AuthorProfileCache
+{
+    static final int MAX_SIZE = 1000;
+    static final long TTL = 10 * 60 * 1000;
+
+    private final UserManager userManager;
+    private final ProductAccessor productAccessor;
+    private final long ttl;
+    private final Map<String, Profile> profiles;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public AuthorProfileCache(UserManager userManager, ProductAccessor productAccessor)
+    {
+        this(userManager, productAccessor, MAX_SIZE, TTL);
+    }
+
+    AuthorProfileCache(UserManager userManager, ProductAccessor productAccessor, final int maxSize, long ttl)
+    {
+        this.userManager = userManager;
+        this.productAccessor = productAccessor;
+        this.ttl = ttl;
+        this.profiles = new LinkedHashMap<String, Profile>(16, 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Profile> eldest)
+            {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * @return The full name of the user from their profile, or the user name if there isn't one
+     */
+    public String getDisplayName(String user)
+    {
+        return resolveDisplayNames(Collections.singleton(user)).get(user);
+    }
+
+    /**
+     * Resolves the display names of many users, such as the authors of a listing.  The user manager can only look up
+     * one user at a time, so this isn't a batch lookup: users that aren't cached are looked up one after another, but
+     * only once each however many times they are given, and without holding the cache lock.
+     *
+     * @return The display names keyed by user name
+     */
+    public Map<String, String> resolveDisplayNames(Collection<String> users)
+    {
+        Map<String, String> result = newHashMap();
+        Set<String> missing = new LinkedHashSet<String>();
+        long now = System.currentTimeMillis();
+        synchronized (profiles)
+        {
+            for (String user : users)
+            {
+                Profile profile = profiles.get(user);
+                if (profile != null && profile.displayName != null && profile.expires > now)
+                {
+                    hits.incrementAndGet();
+                    result.put(user, profile.displayName);
+                }
+                else if (!result.containsKey(user))
+                {
+                    missing.add(user);
+                }
+            }
+        }
+        if (!missing.isEmpty())
+        {
+            // looked up outside the lock as the directory may be slow
+            Map<String, String> resolved = newHashMap();
+            for (String user : missing)
+            {
+                misses.incrementAndGet();
+                UserProfile userProfile = userManager.getUserProfile(user);
+                resolved.put(user, userProfile != null && userProfile.getFullName() != null
+                        ? userProfile.getFullName()
+                        : user);
+            }
+            synchronized (profiles)
+            {
+                for (Map.Entry<String, String> entry : resolved.entrySet())
+                {
+                    getOrCreateProfile(entry.getKey(), now).displayName = entry.getValue();
+                }
+            }
+            result.putAll(resolved);
+        }
+        return result;
+    }
+
+    /**
+     * @return The full name of the user as the product shows it, used for notifications
+     */
+    public String getFullName(String user)
+    {
+        long now = System.currentTimeMillis();
+        synchronized (profiles)
+        {
+            Profile profile = profiles.get(user);
+            if (profile != null && profile.fullName != null && profile.expires > now)
+            {
+                hits.incrementAndGet();
+                return profile.fullName;
+            }
+        }
+        misses.incrementAndGet();
+        String fullName = productAccessor.getUserFullName(user);
+        if (fullName != null)
+        {
+            synchronized (profiles)
+            {
+                getOrCreateProfile(user, now).fullName = fullName;
+            }
+        }
+        return fullName;
+    }
+
+    public CacheStatistics getStatistics()
+    {
+        int size;
+        synchronized (profiles)
+        {
+            size = profiles.size();
+        }
+        return new CacheStatistics("authorProfiles", size, hits.get(), misses.get());
+    }
+
+    private Profile getOrCreateProfile(String user, long now)
+    {
+        Profile profile = profiles.get(user);
+        if (profile == null || profile.expires <= now)
+        {
+            profile = new Profile(now + ttl);
+            profiles.put(user, profile);
+        }
+        return profile;
+    }
+
+    private static class Profile
+    {
+        private final long expires;
+        private String displayName;
+        private String fullName;
+
+        public Profile(long expires)
+        {
+            this.expires = expires;
+        }
+    }
+}
@@ -3,12 +3,13 @@ package com.atlassian.labs.speakeasy;
 import com.atlassian.plugin.ModuleDescriptor;
 import com.atlassian.plugin.webresource.WebResourceModuleDescriptor;
 
-import java.util.List;
-
 /**
  *
  */
 public interface DescriptorGenerator<D extends ModuleDescriptor>
 {
-    Iterable<D> getDescriptorsToExposeForUsers(List<String> users, long state);
+    /**
+     * @param state The state of the plugin bundle, so descriptors only change when the bundle does
+     */
+    Iterable<D> getDescriptorsToExpose(long state);
 }
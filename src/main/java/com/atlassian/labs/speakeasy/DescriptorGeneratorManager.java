@@ -1,191 +1,381 @@
 package com.atlassian.labs.speakeasy;
 
-import com.atlassian.labs.speakeasy.data.SpeakeasyData;
+import com.atlassian.labs.speakeasy.metrics.SpeakeasyMetrics;
+import com.atlassian.labs.speakeasy.util.KeyedSerialExecutor;
 import com.atlassian.plugin.ModuleDescriptor;
-import com.atlassian.plugin.Plugin;
-import com.atlassian.plugin.PluginAccessor;
-import com.atlassian.plugin.PluginController;
 import com.atlassian.plugin.event.PluginEventListener;
 import com.atlassian.plugin.event.PluginEventManager;
-import com.atlassian.plugin.event.events.PluginDisabledEvent;
-import com.atlassian.plugin.event.events.PluginEnabledEvent;
-import com.atlassian.plugin.hostcontainer.HostContainer;
-import com.atlassian.plugin.util.WaitUntil;
-import com.atlassian.plugin.webresource.WebResourceModuleDescriptor;
-import com.sun.syndication.io.ModuleGenerator;
+import com.atlassian.plugin.event.events.PluginFrameworkStartedEvent;
+import com.atlassian.sal.api.lifecycle.LifecycleAware;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.ServiceRegistration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.DisposableBean;
 
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static com.atlassian.labs.speakeasy.util.BundleUtil.findBundleForPlugin;
 import static com.google.common.collect.Lists.newArrayList;
 
 /**
- *
+ * Registers the descriptors generated by descriptor generators as services of the plugin they belong to.  Work for
+ * different plugins runs in parallel on a bounded pool, while work for one plugin runs in the order it was asked for, so
+ * generators that depend on each other, which are always in the same plugin, are registered in the order they were
+ * enabled.
+ * <p>
+ * Until the plugin framework has started, registering a generator doesn't wait for its descriptors, so startup time
+ * grows with the number of extensions divided by the number of threads.  After that, work for an idle plugin runs on
+ * the caller's thread as before, while work for a plugin that is busy is queued behind it, so plugin framework event
+ * threads never wait on the pool.  The framework may have started long before Speakeasy was installed, in which case the
+ * started event never comes, so the application starting, which is also told to components created after it, ends
+ * startup too.
  */
-public class DescriptorGeneratorManager
+public class DescriptorGeneratorManager implements LifecycleAware, DisposableBean
 {
-    private final SpeakeasyData data;
-    private final PluginAccessor pluginAccessor;
+    /**
+     * System property for the number of threads generating descriptors, defaulting to the number of processors
+     */
+    public static final String THREADS_PROPERTY = "speakeasy.generator.threads";
+
     private final BundleContext bundleContext;
-    private final Map<String, Registration> registrations;
-    private final PluginController pluginController;
+    private final ConcurrentMap<String, ConcurrentMap<String, Registration>> registrations;
+    private final ModuleStateTracker moduleStateTracker;
+    private final PluginEventManager pluginEventManager;
+    private final KeyedSerialExecutor executor;
+    private final SpeakeasyMetrics metrics;
 
+    private volatile boolean starting = true;
+    private final AtomicInteger pendingStartupTasks = new AtomicInteger();
+    private final AtomicInteger startupGenerators = new AtomicInteger();
+    private final long startTime = System.currentTimeMillis();
+    private final int threads;
+    private boolean startupReported;
+    private static final Logger log = LoggerFactory.getLogger(DescriptorGeneratorManager.class);
 
-    public DescriptorGeneratorManager(SpeakeasyData data, PluginAccessor pluginAccessor, BundleContext bundleContext, PluginController pluginController)
+    public DescriptorGeneratorManager(BundleContext bundleContext, ModuleStateTracker moduleStateTracker, PluginEventManager pluginEventManager, SpeakeasyMetrics metrics)
     {
-        this.data = data;
-        this.pluginAccessor = pluginAccessor;
         this.bundleContext = bundleContext;
-        this.pluginController = pluginController;
-        this.registrations = new ConcurrentHashMap<String, Registration>();
+        this.moduleStateTracker = moduleStateTracker;
+        this.pluginEventManager = pluginEventManager;
+        this.metrics = metrics;
+        this.registrations = new ConcurrentHashMap<String, ConcurrentMap<String, Registration>>();
+        this.threads = Math.max(1, Integer.getInteger(THREADS_PROPERTY, Runtime.getRuntime().availableProcessors()));
+        this.executor = new KeyedSerialExecutor("speakeasy-descriptor-generator", threads);
+        pluginEventManager.register(this);
     }
 
-    public void registerGenerator(String pluginKey, String descriptorKey, DescriptorGenerator<? extends ModuleDescriptor> descriptorGenerator)
+    @PluginEventListener
+    public void onPluginFrameworkStarted(PluginFrameworkStartedEvent event)
     {
-        // unregister any existing services
-        List<ModuleDescriptor> unregisteredDescriptors = unregisterGenerator(pluginKey, descriptorKey);
-        waitUntilModulesAreDisabled(unregisteredDescriptors);
+        started();
+    }
 
-        // generate and register new services
-        List<String> accessList = data.getUsersList(pluginKey);
-        Bundle targetBundle = findBundleForPlugin(bundleContext, pluginKey);
-        List<ModuleDescriptor> generatedDescriptors = new ArrayList<ModuleDescriptor>();
-        List<ServiceRegistration> serviceRegistrations = newArrayList();
-        for (ModuleDescriptor generatedDescriptor : descriptorGenerator.getDescriptorsToExposeForUsers(accessList, targetBundle.getLastModified()))
+    public void onStart()
+    {
+        started();
+    }
+
+    private void started()
+    {
+        starting = false;
+        reportStartupIfDone();
+    }
+
+    public void destroy() throws Exception
+    {
+        pluginEventManager.unregister(this);
+        executor.shutdown();
+    }
+
+    public void registerGenerator(final String pluginKey, final String descriptorKey, final DescriptorGenerator<? extends ModuleDescriptor> descriptorGenerator)
+    {
+        metrics.recordRegistration();
+        run(pluginKey, countingFailures(new Callable<Object>()
         {
-            ServiceRegistration reg = targetBundle.getBundleContext().registerService(ModuleDescriptor.class.getName(), generatedDescriptor, null);
-            serviceRegistrations.add(reg);
-            generatedDescriptors.add(generatedDescriptor);
+            public Object call() throws Exception
+            {
+                // unregister any existing services
+                List<ModuleDescriptor> unregisteredDescriptors = removeRegistration(pluginKey, descriptorKey);
+                waitUntilDisabled(unregisteredDescriptors);
+
+                // generate and register new services
+                long start = System.currentTimeMillis();
+                List<ModuleDescriptor> generatedDescriptors = generateAndRegister(pluginKey, descriptorKey, descriptorGenerator);
+                metrics.recordGeneration(System.currentTimeMillis() - start);
+                waitUntilEnabled(generatedDescriptors);
+                return null;
+            }
+        }), true);
+    }
+
+    /**
+     * @return The descriptors that were registered, or an empty list if the generator is unregistered in the background,
+     * as it is while the plugin framework is starting or earlier work of the plugin is still running
+     */
+    public List<ModuleDescriptor> unregisterGenerator(final String pluginKey, final String descriptorKey)
+    {
+        List<ModuleDescriptor> removed = run(pluginKey, countingFailures(new Callable<List<ModuleDescriptor>>()
+        {
+            public List<ModuleDescriptor> call() throws Exception
+            {
+                return removeRegistration(pluginKey, descriptorKey);
+            }
+        }), false);
+        return removed != null ? removed : Collections.<ModuleDescriptor>emptyList();
+    }
+
+    /**
+     * Runs the task after the earlier tasks of the plugin, on the calling thread if there are none and the plugin
+     * framework has started, otherwise in the background
+     *
+     * @return The result of the task, or null if it runs in the background
+     */
+    private <T> T run(final String pluginKey, final Callable<T> task, boolean generating)
+    {
+        if (executor.isRunning(pluginKey))
+        {
+            // called from the plugin's own task, such as when its descriptors enable more generators, which is already
+            // in order, while waiting for the plugin's queue would never end
+            return call(task);
+        }
+        if (!starting && !executor.isExecutorThread())
+        {
+            // never wait for a busy plugin, as the caller is usually a plugin framework event thread
+            Future<T> future = executor.callOrSubmit(pluginKey, inBackground(pluginKey, task, false, Thread.currentThread()));
+            return future.isDone() ? getDone(future) : null;
         }
-        registrations.put(getKey(pluginKey, descriptorKey), new Registration(
-                pluginKey,
-                descriptorKey,
-                descriptorGenerator,
-                serviceRegistrations
-        ));
 
-        waitUntilModulesAreEnabled(generatedDescriptors);
+        // a task of another plugin mustn't hold its thread waiting, as every thread could end up waiting on another
+        final boolean startup = starting;
+        if (startup)
+        {
+            pendingStartupTasks.incrementAndGet();
+            if (generating)
+            {
+                startupGenerators.incrementAndGet();
+            }
+        }
+        executor.submit(pluginKey, inBackground(pluginKey, task, startup, null));
+        return null;
     }
 
-    public List<ModuleDescriptor> unregisterGenerator(String pluginKey, String descriptorKey)
+    /**
+     * Logs the failures of a task nobody is waiting for, and counts down startup tasks
+     *
+     * @param caller The thread that would see the failure if the task runs on it, or null if it never does
+     */
+    private <T> Callable<T> inBackground(final String pluginKey, final Callable<T> task, final boolean startup, final Thread caller)
     {
-        String keyToRemove = getKey(pluginKey, descriptorKey);
-        List<ModuleDescriptor> removedDescriptors = new ArrayList<ModuleDescriptor>();
-        Registration registration = registrations.remove(keyToRemove);
-        if (registration != null)
+        return new Callable<T>()
         {
-            for (ServiceRegistration reg : registration.getServiceRegistrations())
+            public T call() throws Exception
             {
                 try
                 {
-                    removedDescriptors.add((ModuleDescriptor) bundleContext.getService(reg.getReference()));
-                    reg.unregister();
+                    return task.call();
                 }
-                catch (IllegalStateException ex)
+                catch (Exception ex)
                 {
-                    // no worries, this only means the bundle was already shut down so the services aren't valid anymore
+                    if (Thread.currentThread() != caller)
+                    {
+                        log.error("Unable to update the generated descriptors of '" + pluginKey + "'", ex);
+                    }
+                    throw ex;
+                }
+                finally
+                {
+                    if (startup)
+                    {
+                        pendingStartupTasks.decrementAndGet();
+                        reportStartupIfDone();
+                    }
                 }
             }
+        };
+    }
+
+    private void waitUntilEnabled(List<ModuleDescriptor> descriptors)
+    {
+        if (!descriptors.isEmpty())
+        {
+            long start = System.currentTimeMillis();
+            moduleStateTracker.waitUntilEnabled(descriptors);
+            metrics.recordEnableWait(System.currentTimeMillis() - start);
         }
-        return removedDescriptors;
     }
 
-    public void refreshGeneratedDescriptorsForPlugin(String pluginKey)
+    private void waitUntilDisabled(List<ModuleDescriptor> descriptors)
     {
-        for (Registration reg : findRegistrationsForPlugin(pluginKey))
+        if (!descriptors.isEmpty())
         {
-            registerGenerator(reg.getPluginKey(), reg.getDescriptorKey(), reg.getDescriptorGenerator());
+            long start = System.currentTimeMillis();
+            moduleStateTracker.waitUntilDisabled(descriptors);
+            metrics.recordDisableWait(System.currentTimeMillis() - start);
         }
     }
 
-    private Iterable<Registration> findRegistrationsForPlugin(String key)
+    private <T> Callable<T> countingFailures(final Callable<T> task)
+    {
+        return new Callable<T>()
+        {
+            public T call() throws Exception
+            {
+                try
+                {
+                    return task.call();
+                }
+                catch (Exception ex)
+                {
+                    metrics.recordFailure();
+                    throw ex;
+                }
+            }
+        };
+    }
+
+    private void reportStartupIfDone()
     {
-        List<Registration> result = newArrayList();
-        String keyPrefix = key + ":";
-        for (String completeKey : newArrayList(registrations.keySet()))
+        if (starting || pendingStartupTasks.get() > 0)
+        {
+            return;
+        }
+        synchronized (this)
         {
-            if (completeKey.startsWith(keyPrefix))
+            if (startupReported)
             {
-                result.add(registrations.get(completeKey));
+                return;
             }
+            startupReported = true;
         }
-        return result;
+        log.info("Registered " + startupGenerators.get() + " descriptor generators in "
+                + (System.currentTimeMillis() - startTime) + " ms on " + threads + " threads during startup");
     }
 
-    public static String getStatefulKey(String descriptorKey, long state)
+    private static <T> T getDone(Future<T> future)
     {
-        return descriptorKey + "-" + state;
+        try
+        {
+            return future.get();
+        }
+        catch (CancellationException e)
+        {
+            // shut down before the task could run
+            return null;
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        catch (ExecutionException e)
+        {
+            if (e.getCause() instanceof RuntimeException)
+            {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        }
     }
 
-    private String getKey(String pluginKey, String descriptorKey)
+    private static <T> T call(Callable<T> task)
     {
-        return pluginKey + ":" + descriptorKey;
+        try
+        {
+            return task.call();
+        }
+        catch (RuntimeException e)
+        {
+            throw e;
+        }
+        catch (Exception e)
+        {
+            throw new RuntimeException(e);
+        }
     }
 
-    private void waitUntilModulesAreDisabled(final List<ModuleDescriptor> descriptors)
+    private List<ModuleDescriptor> removeRegistration(String pluginKey, String descriptorKey)
     {
-        WaitUntil.invoke(new WaitUntil.WaitCondition()
+        List<ModuleDescriptor> removedDescriptors = new ArrayList<ModuleDescriptor>();
+        Registration registration = null;
+        ConcurrentMap<String, Registration> pluginRegistrations = registrations.get(pluginKey);
+        if (pluginRegistrations != null)
         {
-            public boolean isFinished()
+            registration = pluginRegistrations.remove(descriptorKey);
+            if (pluginRegistrations.isEmpty())
             {
-                for (ModuleDescriptor descriptor : descriptors)
-                {
-                    ModuleDescriptor<?> module = pluginAccessor.getEnabledPluginModule(descriptor.getCompleteKey());
-                    if (module != null)
-                    {
-                        return false;
-                    }
-                }
-                return true;
+                // changes to a plugin are queued one at a time, so nothing is added to the map while it is removed
+                registrations.remove(pluginKey, pluginRegistrations);
             }
-
-            public String getWaitMessage()
+        }
+        if (registration != null)
+        {
+            for (ServiceRegistration reg : registration.getServiceRegistrations())
             {
-                return "Waiting until the enabled plugins are available";
+                unregister(reg, removedDescriptors);
             }
-        });
+        }
+        return removedDescriptors;
     }
 
-    private void waitUntilModulesAreEnabled(final List<ModuleDescriptor> generatedDescriptors)
+    private void unregister(ServiceRegistration reg, List<ModuleDescriptor> removedDescriptors)
     {
-        WaitUntil.invoke(new WaitUntil.WaitCondition()
+        try
         {
-            public boolean isFinished()
-            {
-                for (ModuleDescriptor descriptor : generatedDescriptors)
-                {
-                    ModuleDescriptor<?> module = pluginAccessor.getPluginModule(descriptor.getCompleteKey());
-                    if (module == null)
-                    {
-                        return false;
-                    }
-                    else
-                    {
-                        if (!pluginAccessor.isPluginModuleEnabled(descriptor.getCompleteKey()))
-                        {
-                            // This is necessary as Confluence will handle unregistered descriptors as an explicit
-                            // disabling persisted in local state
-                            pluginController.enablePluginModule(descriptor.getCompleteKey());
-                            return true;
-                        }
-                    }
-                }
-                return true;
-            }
+            removedDescriptors.add((ModuleDescriptor) bundleContext.getService(reg.getReference()));
+            reg.unregister();
+        }
+        catch (IllegalStateException ex)
+        {
+            // no worries, this only means the bundle was already shut down so the services aren't valid anymore
+        }
+        metrics.servicesChanged(-1);
+    }
 
-            public String getWaitMessage()
+    private List<ModuleDescriptor> generateAndRegister(String pluginKey, String descriptorKey, DescriptorGenerator<? extends ModuleDescriptor> descriptorGenerator)
+    {
+        Bundle targetBundle = findBundleForPlugin(bundleContext, pluginKey);
+        List<ModuleDescriptor> generatedDescriptors = new ArrayList<ModuleDescriptor>();
+        List<ServiceRegistration> serviceRegistrations = newArrayList();
+        for (ModuleDescriptor generatedDescriptor : descriptorGenerator.getDescriptorsToExpose(targetBundle.getLastModified()))
+        {
+            ServiceRegistration reg = targetBundle.getBundleContext().registerService(ModuleDescriptor.class.getName(), generatedDescriptor, null);
+            serviceRegistrations.add(reg);
+            metrics.servicesChanged(1);
+            generatedDescriptors.add(generatedDescriptor);
+        }
+        ConcurrentMap<String, Registration> pluginRegistrations = registrations.get(pluginKey);
+        if (pluginRegistrations == null)
+        {
+            ConcurrentMap<String, Registration> created = new ConcurrentHashMap<String, Registration>();
+            pluginRegistrations = registrations.putIfAbsent(pluginKey, created);
+            if (pluginRegistrations == null)
             {
-                return "Waiting until the enabled plugins are available";
+                pluginRegistrations = created;
             }
-        });
+        }
+        pluginRegistrations.put(descriptorKey, new Registration(
+                pluginKey,
+                descriptorKey,
+                descriptorGenerator,
+                serviceRegistrations
+        ));
+        return generatedDescriptors;
+    }
+
+    public static String getStatefulKey(String descriptorKey, long state)
+    {
+        return descriptorKey + "-" + state;
     }
 
     private static class Registration
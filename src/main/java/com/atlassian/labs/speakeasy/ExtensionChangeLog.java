@@ -0,0 +1,187 @@
+package com.atlassian.labs.speakeasy;
+
+import com.atlassian.labs.speakeasy.commonjs.descriptor.CommonJsModulesDescriptor;
+import com.atlassian.labs.speakeasy.data.ExtensionDataListener;
+import com.atlassian.labs.speakeasy.data.SpeakeasyData;
+import com.atlassian.plugin.ModuleDescriptor;
+import com.atlassian.plugin.event.PluginEventListener;
+import com.atlassian.plugin.event.PluginEventManager;
+import com.atlassian.plugin.event.events.PluginDisabledEvent;
+import com.atlassian.plugin.event.events.PluginEnabledEvent;
+import com.atlassian.plugin.event.events.PluginModuleDisabledEvent;
+import com.atlassian.plugin.event.events.PluginModuleEnabledEvent;
+import org.springframework.beans.factory.DisposableBean;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * A versioned log of which extensions have changed, kept in a fixed size ring.  Versions start at the time the log
+ * was created, so versions handed out before a restart, or that have fallen out of the ring, are detected and the
+ * client is told to reload everything.
+ */
+public class ExtensionChangeLog implements ExtensionDataListener, DisposableBean
+{
+    static final int CAPACITY = 1024;
+    static final long MAX_WAIT = 30 * 1000;
+
+    private final PluginEventManager pluginEventManager;
+    private final SpeakeasyData data;
+    private final String[] pluginKeys;
+    private long version;
+    private long resetVersion;
+
+    public ExtensionChangeLog(PluginEventManager pluginEventManager, SpeakeasyData data)
+    {
+        this(pluginEventManager, data, CAPACITY, System.currentTimeMillis());
+    }
+
+    ExtensionChangeLog(PluginEventManager pluginEventManager, SpeakeasyData data, int capacity, long startVersion)
+    {
+        this.pluginEventManager = pluginEventManager;
+        this.data = data;
+        this.pluginKeys = new String[capacity];
+        this.version = startVersion;
+        this.resetVersion = startVersion;
+        pluginEventManager.register(this);
+        data.addListener(this);
+    }
+
+    public synchronized long getVersion()
+    {
+        return version;
+    }
+
+    /**
+     * Records a change to a single extension
+     */
+    public synchronized void record(String pluginKey)
+    {
+        version++;
+        pluginKeys[(int) (version % pluginKeys.length)] = pluginKey;
+        notifyAll();
+    }
+
+    /**
+     * Records a change that can affect every extension, like a change of settings, forcing clients to reload
+     */
+    public synchronized void reset()
+    {
+        version++;
+        resetVersion = version;
+        notifyAll();
+    }
+
+    /**
+     * @return The changes after the version, or a reset if they are no longer known
+     */
+    public synchronized Changes getChangesSince(long since)
+    {
+        long oldest = Math.max(resetVersion, version - pluginKeys.length);
+        if (since < oldest || since > version)
+        {
+            return new Changes(version, true, new LinkedHashSet<String>());
+        }
+        Set<String> changed = new LinkedHashSet<String>();
+        for (long v = since + 1; v <= version; v++)
+        {
+            changed.add(pluginKeys[(int) (v % pluginKeys.length)]);
+        }
+        return new Changes(version, false, changed);
+    }
+
+    /**
+     * Waits until there are changes after the version or the timeout, capped at thirty seconds, has passed
+     */
+    public synchronized Changes waitForChangesSince(long since, long timeout) throws InterruptedException
+    {
+        long end = System.currentTimeMillis() + Math.min(timeout, MAX_WAIT);
+        long remaining;
+        while (version == since && (remaining = end - System.currentTimeMillis()) > 0)
+        {
+            wait(remaining);
+        }
+        return getChangesSince(since);
+    }
+
+    public void onExtensionChanged(String pluginKey)
+    {
+        record(pluginKey);
+    }
+
+    public void onAllExtensionsChanged()
+    {
+        reset();
+    }
+
+    @PluginEventListener
+    public void onPluginEnabled(PluginEnabledEvent event)
+    {
+        record(event.getPlugin().getKey());
+    }
+
+    @PluginEventListener
+    public void onPluginDisabled(PluginDisabledEvent event)
+    {
+        record(event.getPlugin().getKey());
+    }
+
+    @PluginEventListener
+    public void onPluginModuleEnabled(PluginModuleEnabledEvent event)
+    {
+        recordModule(event.getModule());
+    }
+
+    @PluginEventListener
+    public void onPluginModuleDisabled(PluginModuleDisabledEvent event)
+    {
+        recordModule(event.getModule());
+    }
+
+    public void destroy() throws Exception
+    {
+        pluginEventManager.unregister(this);
+        data.removeListener(this);
+    }
+
+    private void recordModule(ModuleDescriptor descriptor)
+    {
+        // only modules that change what an extension looks like, as every plugin in the product fires module events
+        if (descriptor instanceof DescriptorGenerator || descriptor instanceof CommonJsModulesDescriptor)
+        {
+            record(descriptor.getPluginKey());
+        }
+    }
+
+    public static class Changes
+    {
+        private final long version;
+        private final boolean reset;
+        private final Set<String> pluginKeys;
+
+        public Changes(long version, boolean reset, Set<String> pluginKeys)
+        {
+            this.version = version;
+            this.reset = reset;
+            this.pluginKeys = pluginKeys;
+        }
+
+        public long getVersion()
+        {
+            return version;
+        }
+
+        /**
+         * @return True if the changes aren't known and the client should reload everything
+         */
+        public boolean isReset()
+        {
+            return reset;
+        }
+
+        public Set<String> getPluginKeys()
+        {
+            return pluginKeys;
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package com.atlassian.labs.speakeasy;
+
+import com.atlassian.labs.speakeasy.commonjs.descriptor.CommonJsModulesDescriptor;
+import com.atlassian.labs.speakeasy.install.convention.ConventionMetadataCache;
+import com.atlassian.labs.speakeasy.model.JsonManifest;
+import com.atlassian.plugin.ModuleDescriptor;
+import com.atlassian.plugin.Plugin;
+import com.atlassian.plugin.descriptors.UnloadableModuleDescriptor;
+import com.atlassian.plugin.event.PluginEventListener;
+import com.atlassian.plugin.event.PluginEventManager;
+import com.atlassian.plugin.event.events.PluginDisabledEvent;
+import com.atlassian.plugin.event.events.PluginEnabledEvent;
+import com.atlassian.plugin.event.events.PluginModuleDisabledEvent;
+import com.atlassian.plugin.event.events.PluginModuleEnabledEvent;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.springframework.beans.factory.DisposableBean;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.atlassian.labs.speakeasy.util.BundleUtil.findBundleForPlugin;
+import static com.google.common.collect.Sets.newHashSet;
+
+/**
+ * Caches the facts about an extension that only change when its bundle does: its type, whether it only contains
+ * Speakeasy modules, and the name and description from its manifest.  Entries are checked against the plugin
+ * instance and the last modified time of the bundle, so reinstalls and upgrades are picked up.  Unresolved CommonJS
+ * dependencies also depend on other plugins, so they are recalculated whenever CommonJS modules come or go.
+ */
+public class ExtensionClassificationCache implements DisposableBean
+{
+    private final BundleContext bundleContext;
+    private final ConventionMetadataCache conventionMetadataCache;
+    private final PluginEventManager pluginEventManager;
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+    private final AtomicLong modulesGeneration = new AtomicLong();
+
+    public ExtensionClassificationCache(BundleContext bundleContext, ConventionMetadataCache conventionMetadataCache, PluginEventManager pluginEventManager)
+    {
+        this.bundleContext = bundleContext;
+        this.conventionMetadataCache = conventionMetadataCache;
+        this.pluginEventManager = pluginEventManager;
+        pluginEventManager.register(this);
+    }
+
+    public Classification getClassification(Plugin plugin)
+    {
+        return getEntry(plugin).classification;
+    }
+
+    public Set<String> getUnresolvedCommonJsDependencies(Plugin plugin)
+    {
+        Entry entry = getEntry(plugin);
+        long generation = modulesGeneration.get();
+        Dependencies dependencies = entry.dependencies;
+        if (dependencies == null || dependencies.generation != generation)
+        {
+            dependencies = new Dependencies(generation, findUnresolvedCommonJsDependencies(plugin));
+            entry.dependencies = dependencies;
+        }
+        return dependencies.unresolved;
+    }
+
+    /**
+     * Drops everything cached about the extension, including its parsed convention metadata
+     */
+    public void evict(String pluginKey)
+    {
+        entries.remove(pluginKey);
+        conventionMetadataCache.evict(pluginKey);
+    }
+
+    @PluginEventListener
+    public void onPluginEnabled(PluginEnabledEvent event)
+    {
+        modulesGeneration.incrementAndGet();
+    }
+
+    @PluginEventListener
+    public void onPluginDisabled(PluginDisabledEvent event)
+    {
+        modulesGeneration.incrementAndGet();
+    }
+
+    @PluginEventListener
+    public void onPluginModuleEnabled(PluginModuleEnabledEvent event)
+    {
+        if (event.getModule() instanceof CommonJsModulesDescriptor)
+        {
+            modulesGeneration.incrementAndGet();
+        }
+    }
+
+    @PluginEventListener
+    public void onPluginModuleDisabled(PluginModuleDisabledEvent event)
+    {
+        if (event.getModule() instanceof CommonJsModulesDescriptor)
+        {
+            modulesGeneration.incrementAndGet();
+        }
+    }
+
+    public void destroy() throws Exception
+    {
+        pluginEventManager.unregister(this);
+        entries.clear();
+    }
+
+    private Entry getEntry(Plugin plugin)
+    {
+        Entry entry = entries.get(plugin.getKey());
+        if (entry == null || !entry.isValidFor(plugin))
+        {
+            Bundle bundle = findBundleForPlugin(bundleContext, plugin.getKey());
+            entry = new Entry(plugin, bundle, classify(plugin, bundle));
+            entries.put(plugin.getKey(), entry);
+        }
+        return entry;
+    }
+
+    private Classification classify(Plugin plugin, Bundle bundle)
+    {
+        String extension;
+        String name = null;
+        String description = null;
+        if (plugin.getResource("/" + JsonManifest.ATLASSIAN_EXTENSION_PATH) != null)
+        {
+            JsonManifest mf = conventionMetadataCache.getManifest(plugin, bundle);
+            description = mf.getDescription();
+            name = mf.getName();
+            extension = "zip";
+        }
+        else if (plugin.getResource("/atlassian-plugin.xml") != null)
+        {
+            extension = "jar";
+        }
+        else
+        {
+            extension = "xml";
+        }
+        return new Classification(extension, name, description, onlyContainsSpeakeasyModules(plugin, bundle));
+    }
+
+    private static boolean onlyContainsSpeakeasyModules(Plugin plugin, Bundle bundle)
+    {
+        if (bundle == null)
+        {
+            // not an OSGi plugin, or one that failed to install
+            return false;
+        }
+        String stateIdentifier = String.valueOf(bundle.getLastModified());
+        for (ModuleDescriptor descriptor : plugin.getModuleDescriptors())
+        {
+            if (!(descriptor instanceof DescriptorGenerator)
+                    // FIXME: these checks are hacks
+                    && !descriptor.getKey().endsWith(stateIdentifier) && !descriptor.getKey().endsWith("-modules")
+                    && !(descriptor instanceof UnloadableModuleDescriptor)
+                    && !"screenshot".equals(descriptor.getKey()))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Set<String> findUnresolvedCommonJsDependencies(Plugin plugin)
+    {
+        Set<String> unresolved = newHashSet();
+        for (ModuleDescriptor descriptor : plugin.getModuleDescriptors())
+        {
+            if (descriptor instanceof CommonJsModulesDescriptor)
+            {
+                unresolved.addAll(((CommonJsModulesDescriptor)descriptor).getUnresolvedExternalModuleDependencies());
+            }
+        }
+        return Collections.unmodifiableSet(unresolved);
+    }
+
+    public static class Classification
+    {
+        private final String extension;
+        private final String name;
+        private final String description;
+        private final boolean pureSpeakeasy;
+
+        Classification(String extension, String name, String description, boolean pureSpeakeasy)
+        {
+            this.extension = extension;
+            this.name = name;
+            this.description = description;
+            this.pureSpeakeasy = pureSpeakeasy;
+        }
+
+        /**
+         * @return The type of extension, either "zip", "jar" or "xml"
+         */
+        public String getExtension()
+        {
+            return extension;
+        }
+
+        /**
+         * @return The name from the manifest of a zip extension, or null
+         */
+        public String getName()
+        {
+            return name;
+        }
+
+        /**
+         * @return The description from the manifest of a zip extension, or null
+         */
+        public String getDescription()
+        {
+            return description;
+        }
+
+        /**
+         * @return True if the extension only contains Speakeasy modules, and so can be edited, forked and downloaded
+         */
+        public boolean isPureSpeakeasy()
+        {
+            return pureSpeakeasy;
+        }
+    }
+
+    private static class Entry
+    {
+        private final Plugin plugin;
+        private final Bundle bundle;
+        private final long lastModified;
+        private final Classification classification;
+        private volatile Dependencies dependencies;
+
+        public Entry(Plugin plugin, Bundle bundle, Classification classification)
+        {
+            this.plugin = plugin;
+            this.bundle = bundle;
+            this.lastModified = bundle != null ? bundle.getLastModified() : 0;
+            this.classification = classification;
+        }
+
+        public boolean isValidFor(Plugin plugin)
+        {
+            return this.plugin == plugin
+                    && (bundle == null || (bundle.getState() != Bundle.UNINSTALLED && bundle.getLastModified() == lastModified));
+        }
+    }
+
+    private static class Dependencies
+    {
+        private final long generation;
+        private final Set<String> unresolved;
+
+        public Dependencies(long generation, Set<String> unresolved)
+        {
+            this.generation = generation;
+            this.unresolved = unresolved;
+        }
+    }
+}
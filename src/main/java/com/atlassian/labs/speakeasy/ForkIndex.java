@@ -0,0 +1,109 @@
+package com.atlassian.labs.speakeasy;
+
+import com.atlassian.labs.speakeasy.model.RemotePlugin;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Index of forks by the plugin they were forked from and the author of the fork, relying on the "-fork-" key
+ * convention.  Entries for plugins that have gone away are left to the caller to remove, so callers check the keys
+ * they get back are still installed.
+ */
+public class ForkIndex
+{
+    private final Map<String, Map<String, String>> forksByParent = new HashMap<String, Map<String, String>>();
+    private final Map<String, String> authorsByFork = new HashMap<String, String>();
+    private boolean built;
+
+    public synchronized boolean isBuilt()
+    {
+        return built;
+    }
+
+    /**
+     * Adds all the forks, keyed by fork key with the author as the value, and marks the index as built
+     */
+    public synchronized void build(Map<String, String> authorsByForkKey)
+    {
+        for (Map.Entry<String, String> entry : authorsByForkKey.entrySet())
+        {
+            add(entry.getKey(), entry.getValue());
+        }
+        built = true;
+    }
+
+    /**
+     * Forgets every fork, so the index is built again the next time it is needed
+     */
+    public synchronized void reset()
+    {
+        forksByParent.clear();
+        authorsByFork.clear();
+        built = false;
+    }
+
+    /**
+     * Records the author of a plugin, replacing any previously recorded author.  Ignored if the plugin isn't a fork,
+     * and a fork without an author is only removed, as it can't be looked up by author.
+     */
+    public synchronized void add(String pluginKey, String author)
+    {
+        String parentKey = RemotePlugin.getForkedPluginKey(pluginKey);
+        if (parentKey != null)
+        {
+            remove(pluginKey);
+            if (author == null)
+            {
+                return;
+            }
+            Map<String, String> forks = forksByParent.get(parentKey);
+            if (forks == null)
+            {
+                forks = new HashMap<String, String>();
+                forksByParent.put(parentKey, forks);
+            }
+            forks.put(author, pluginKey);
+            authorsByFork.put(pluginKey, author);
+        }
+    }
+
+    public synchronized void remove(String pluginKey)
+    {
+        String author = authorsByFork.remove(pluginKey);
+        if (author != null)
+        {
+            String parentKey = RemotePlugin.getForkedPluginKey(pluginKey);
+            Map<String, String> forks = forksByParent.get(parentKey);
+            if (forks != null && pluginKey.equals(forks.get(author)))
+            {
+                forks.remove(author);
+                if (forks.isEmpty())
+                {
+                    forksByParent.remove(parentKey);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The key of the fork of the plugin by the author, or null if the author hasn't forked it
+     */
+    public synchronized String getFork(String parentKey, String author)
+    {
+        Map<String, String> forks = forksByParent.get(parentKey);
+        return forks != null ? forks.get(author) : null;
+    }
+
+    /**
+     * @return A copy of the keys of all forks of the plugin, including any that have since been uninstalled
+     */
+    public synchronized Set<String> getForks(String parentKey)
+    {
+        Map<String, String> forks = forksByParent.get(parentKey);
+        return forks != null ? new HashSet<String>(forks.values()) : Collections.<String>emptySet();
+    }
+}
@@ -0,0 +1,205 @@
+package com.atlassian.labs.speakeasy;
+
+import com.atlassian.plugin.ModuleDescriptor;
+import com.atlassian.plugin.PluginAccessor;
+import com.atlassian.plugin.PluginController;
+import com.atlassian.plugin.event.PluginEventListener;
+import com.atlassian.plugin.event.PluginEventManager;
+import com.atlassian.plugin.event.events.PluginModuleDisabledEvent;
+import com.atlassian.plugin.event.events.PluginModuleEnabledEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Waits for modules to be enabled or disabled by the plugin framework.  Waiting threads are woken by module events, so
+ * they return as soon as the framework is done rather than on the next poll.  The state of each module is checked when
+ * the wait starts too, as the framework often finishes before then, and again now and then for modules that never send
+ * an event.
+ */
+public class ModuleStateTracker implements DisposableBean
+{
+    static final long TIMEOUT = 60 * 1000;
+
+    /**
+     * How often the modules not done yet are checked again, as a module registered after a check but left disabled
+     * never sends an event
+     */
+    static final long RECHECK_INTERVAL = 500;
+
+    private final PluginAccessor pluginAccessor;
+    private final PluginController pluginController;
+    private final PluginEventManager pluginEventManager;
+    private final long timeout;
+    private final Set<Waiter> waiters = new CopyOnWriteArraySet<Waiter>();
+    private static final Logger log = LoggerFactory.getLogger(ModuleStateTracker.class);
+
+    public ModuleStateTracker(PluginAccessor pluginAccessor, PluginController pluginController, PluginEventManager pluginEventManager)
+    {
+        this(pluginAccessor, pluginController, pluginEventManager, TIMEOUT);
+    }
+
+    ModuleStateTracker(PluginAccessor pluginAccessor, PluginController pluginController, PluginEventManager pluginEventManager, long timeout)
+    {
+        this.pluginAccessor = pluginAccessor;
+        this.pluginController = pluginController;
+        this.pluginEventManager = pluginEventManager;
+        this.timeout = timeout;
+        pluginEventManager.register(this);
+    }
+
+    /**
+     * @return The keys of the modules still not enabled when the wait timed out
+     */
+    public Set<String> waitUntilEnabled(Collection<? extends ModuleDescriptor> descriptors)
+    {
+        return waitUntil(descriptors, true);
+    }
+
+    /**
+     * @return The keys of the modules still not disabled when the wait timed out
+     */
+    public Set<String> waitUntilDisabled(Collection<? extends ModuleDescriptor> descriptors)
+    {
+        return waitUntil(descriptors, false);
+    }
+
+    @PluginEventListener
+    public void onPluginModuleEnabled(PluginModuleEnabledEvent event)
+    {
+        moduleChanged(event.getModule().getCompleteKey(), true);
+    }
+
+    @PluginEventListener
+    public void onPluginModuleDisabled(PluginModuleDisabledEvent event)
+    {
+        moduleChanged(event.getModule().getCompleteKey(), false);
+    }
+
+    public void destroy() throws Exception
+    {
+        pluginEventManager.unregister(this);
+    }
+
+    private Set<String> waitUntil(Collection<? extends ModuleDescriptor> descriptors, boolean enabled)
+    {
+        if (descriptors.isEmpty())
+        {
+            return Collections.emptySet();
+        }
+        Set<String> keys = new HashSet<String>();
+        for (ModuleDescriptor descriptor : descriptors)
+        {
+            keys.add(descriptor.getCompleteKey());
+        }
+
+        // listen before checking, so a change between the check and the wait is still seen
+        Waiter waiter = new Waiter(keys, enabled);
+        waiters.add(waiter);
+        try
+        {
+            long end = System.currentTimeMillis() + timeout;
+            check(waiter);
+            long left = timeout;
+            while (left > 0 && !waiter.await(Math.min(left, RECHECK_INTERVAL)))
+            {
+                check(waiter);
+                left = end - System.currentTimeMillis();
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        finally
+        {
+            waiters.remove(waiter);
+        }
+        Set<String> remaining = waiter.getRemaining();
+        if (!remaining.isEmpty())
+        {
+            log.warn("Timed out waiting for modules to be " + (enabled ? "enabled" : "disabled") + ": " + remaining);
+        }
+        return remaining;
+    }
+
+    private void check(Waiter waiter)
+    {
+        for (String key : waiter.getRemaining())
+        {
+            if (isInState(key, waiter.enabled))
+            {
+                waiter.done(key);
+            }
+        }
+    }
+
+    private void moduleChanged(String completeKey, boolean enabled)
+    {
+        for (Waiter waiter : waiters)
+        {
+            if (waiter.enabled == enabled)
+            {
+                waiter.done(completeKey);
+            }
+        }
+    }
+
+    private boolean isInState(String completeKey, boolean enabled)
+    {
+        if (!enabled)
+        {
+            return pluginAccessor.getEnabledPluginModule(completeKey) == null;
+        }
+        if (pluginAccessor.getPluginModule(completeKey) == null)
+        {
+            return false;
+        }
+        if (!pluginAccessor.isPluginModuleEnabled(completeKey))
+        {
+            // This is necessary as Confluence will handle unregistered descriptors as an explicit
+            // disabling persisted in local state
+            pluginController.enablePluginModule(completeKey);
+        }
+        return true;
+    }
+
+    private static class Waiter
+    {
+        private final Set<String> remaining;
+        private final boolean enabled;
+        private final CountDownLatch latch = new CountDownLatch(1);
+
+        public Waiter(Set<String> keys, boolean enabled)
+        {
+            this.remaining = new HashSet<String>(keys);
+            this.enabled = enabled;
+        }
+
+        public synchronized void done(String completeKey)
+        {
+            if (remaining.remove(completeKey) && remaining.isEmpty())
+            {
+                latch.countDown();
+            }
+        }
+
+        public boolean await(long timeout) throws InterruptedException
+        {
+            return latch.await(timeout, TimeUnit.MILLISECONDS);
+        }
+
+        public synchronized Set<String> getRemaining()
+        {
+            return new HashSet<String>(remaining);
+        }
+    }
+}
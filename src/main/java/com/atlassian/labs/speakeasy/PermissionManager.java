@@ -5,48 +5,83 @@ import com.atlassian.sal.api.user.UserManager;
 import com.google.common.collect.ImmutableMap;
 
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
- *
+ * Decides what users can do.  As a single request asks the same questions many times, the answers for a user are
+ * remembered for a short time, and forgotten as soon as the settings change.
  */
 public class PermissionManager
 {
+    static final long TTL = 30 * 1000;
+    static final int MAX_USERS = 5000;
+
     private final UserManager userManager;
     private final SettingsManager settingsManager;
+    private final long ttl;
+    private final ConcurrentMap<String, Decisions> decisions = new ConcurrentHashMap<String, Decisions>();
 
     public PermissionManager(UserManager userManager, SettingsManager settingsManager)
+    {
+        this(userManager, settingsManager, TTL);
+    }
+
+    PermissionManager(UserManager userManager, SettingsManager settingsManager, long ttl)
     {
         this.userManager = userManager;
         this.settingsManager = settingsManager;
+        this.ttl = ttl;
     }
 
     public boolean canAccessSpeakeasy(String user)
     {
-        Settings settings = settingsManager.getSettings();
-        boolean validUser = user != null;
-
-        boolean inAccessGroup = isInAllowedGroup(settings.getAccessGroups(), user);
-
-        return validUser && (isAdmin(user) || inAccessGroup);
+        if (user == null)
+        {
+            return false;
+        }
+        Decisions userDecisions = getDecisions(user);
+        return userDecisions.isAdmin() || userDecisions.isInAccessGroup();
     }
 
     public boolean canEnableExtensions(String user)
     {
         Settings settings = settingsManager.getSettings();
-        boolean isAdmin = isAdmin(user);
+        if (user == null)
+        {
+            return settings.isAllowAdmins();
+        }
+        boolean isAdmin = getDecisions(user).isAdmin();
         boolean adminsAllowed = settings.isAllowAdmins();
         return canAccessSpeakeasy(user) && !isAdmin || adminsAllowed;
     }
 
-    private boolean isAdmin(String user)
+    public boolean canAuthorExtensions(String user)
     {
-        return userManager.isAdmin(user) || userManager.isSystemAdmin(user);
+        return canAccessSpeakeasy(user) && getDecisions(user).isInAuthorGroup();
     }
 
-    public boolean canAuthorExtensions(String user)
+    private Decisions getDecisions(String user)
     {
         Settings settings = settingsManager.getSettings();
-        return canAccessSpeakeasy(user) && isInAllowedGroup(settings.getAuthorGroups(), user);
+        long now = System.currentTimeMillis();
+        Decisions userDecisions = decisions.get(user);
+        // settings are replaced rather than modified, so a different instance means the groups may have changed
+        if (userDecisions == null || userDecisions.settings != settings || userDecisions.expires <= now)
+        {
+            if (decisions.size() >= MAX_USERS)
+            {
+                decisions.clear();
+            }
+            userDecisions = new Decisions(user, settings, now + ttl);
+            decisions.put(user, userDecisions);
+        }
+        return userDecisions;
+    }
+
+    private boolean isAdmin(String user)
+    {
+        return userManager.isAdmin(user) || userManager.isSystemAdmin(user);
     }
 
     private boolean isInAllowedGroup(Iterable<String> allowedGroups, String user)
@@ -60,4 +95,51 @@ public class PermissionManager
         }
         return false;
     }
+
+    /**
+     * The answers for a user, each worked out the first time it is needed
+     */
+    private class Decisions
+    {
+        private final String user;
+        private final Settings settings;
+        private final long expires;
+        private volatile Boolean admin;
+        private volatile Boolean inAccessGroup;
+        private volatile Boolean inAuthorGroup;
+
+        public Decisions(String user, Settings settings, long expires)
+        {
+            this.user = user;
+            this.settings = settings;
+            this.expires = expires;
+        }
+
+        public boolean isAdmin()
+        {
+            if (admin == null)
+            {
+                admin = PermissionManager.this.isAdmin(user);
+            }
+            return admin;
+        }
+
+        public boolean isInAccessGroup()
+        {
+            if (inAccessGroup == null)
+            {
+                inAccessGroup = isInAllowedGroup(settings.getAccessGroups(), user);
+            }
+            return inAccessGroup;
+        }
+
+        public boolean isInAuthorGroup()
+        {
+            if (inAuthorGroup == null)
+            {
+                inAuthorGroup = isInAllowedGroup(settings.getAuthorGroups(), user);
+            }
+            return inAuthorGroup;
+        }
+    }
 }
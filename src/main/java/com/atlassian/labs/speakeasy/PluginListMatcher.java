@@ -0,0 +1,164 @@
+package com.atlassian.labs.speakeasy;
+
+import com.atlassian.labs.speakeasy.data.SpeakeasyData;
+import com.atlassian.labs.speakeasy.model.RemotePlugin;
+import com.atlassian.plugin.Plugin;
+import com.atlassian.plugin.PluginAccessor;
+
+import java.util.Comparator;
+import java.util.Map;
+
+import static com.google.common.collect.Maps.newHashMap;
+
+/**
+ * Matches and sorts extensions for a {@link PluginListQuery}.  Only what can be read cheaply is used, so a page can be
+ * picked out of every extension before any of them are fully built.  Names and descriptions are the ones listings
+ * show, so zip extensions match and sort on their manifest rather than the generated plugin.
+ */
+public class PluginListMatcher
+{
+    private final PluginAccessor pluginAccessor;
+    private final SpeakeasyData data;
+    private final ExtensionClassificationCache classificationCache;
+
+    public PluginListMatcher(PluginAccessor pluginAccessor, SpeakeasyData data, ExtensionClassificationCache classificationCache)
+    {
+        this.pluginAccessor = pluginAccessor;
+        this.data = data;
+        this.classificationCache = classificationCache;
+    }
+
+    public boolean matches(Plugin plugin, String userName, PluginListQuery query)
+    {
+        if (query.getFork() != null && query.getFork() != (RemotePlugin.getForkedPluginKey(plugin.getKey()) != null))
+        {
+            return false;
+        }
+        if (query.getAvailable() != null || query.getEnabled() != null)
+        {
+            boolean available = pluginAccessor.isPluginEnabled(plugin.getKey()) && classificationCache.getUnresolvedCommonJsDependencies(plugin).isEmpty();
+            if (query.getAvailable() != null && query.getAvailable() != available)
+            {
+                return false;
+            }
+            if (query.getEnabled() != null && query.getEnabled() != (available && data.hasAccess(plugin.getKey(), userName)))
+            {
+                return false;
+            }
+        }
+        if (query.getText() != null && !containsText(plugin, query.getText()))
+        {
+            return false;
+        }
+        if (query.getAuthor() != null && !query.getAuthor().equals(getAuthor(plugin)))
+        {
+            return false;
+        }
+        return true;
+    }
+
+    public Comparator<Plugin> createComparator(PluginListQuery.Sort sort)
+    {
+        final Map<String, String> names = newHashMap();
+        final Comparator<Plugin> byName = new Comparator<Plugin>()
+        {
+            public int compare(Plugin o1, Plugin o2)
+            {
+                int result = getName(o1).compareToIgnoreCase(getName(o2));
+                return result != 0 ? result : o1.getKey().compareTo(o2.getKey());
+            }
+
+            private String getName(Plugin plugin)
+            {
+                String name = names.get(plugin.getKey());
+                if (name == null)
+                {
+                    name = getDisplayName(plugin);
+                    names.put(plugin.getKey(), name);
+                }
+                return name;
+            }
+        };
+        switch (sort)
+        {
+            case AUTHOR:
+                final Map<String, String> authors = newHashMap();
+                return new Comparator<Plugin>()
+                {
+                    public int compare(Plugin o1, Plugin o2)
+                    {
+                        int result = getAuthor(o1).compareToIgnoreCase(getAuthor(o2));
+                        return result != 0 ? result : byName.compare(o1, o2);
+                    }
+
+                    private String getAuthor(Plugin plugin)
+                    {
+                        String author = authors.get(plugin.getKey());
+                        if (author == null)
+                        {
+                            author = PluginListMatcher.this.getAuthor(plugin);
+                            authors.put(plugin.getKey(), author);
+                        }
+                        return author;
+                    }
+                };
+            case USERS:
+                return new Comparator<Plugin>()
+                {
+                    public int compare(Plugin o1, Plugin o2)
+                    {
+                        int result = data.getUserCount(o2.getKey()) - data.getUserCount(o1.getKey());
+                        return result != 0 ? result : byName.compare(o1, o2);
+                    }
+                };
+            case KEY:
+                return new Comparator<Plugin>()
+                {
+                    public int compare(Plugin o1, Plugin o2)
+                    {
+                        return o1.getKey().compareTo(o2.getKey());
+                    }
+                };
+            default:
+                return byName;
+        }
+    }
+
+    /**
+     * @return The author set in Speakeasy, falling back to the vendor of the plugin
+     */
+    public String getAuthor(Plugin plugin)
+    {
+        String author = data.getPluginAuthor(plugin.getKey());
+        if (author == null)
+        {
+            author = plugin.getPluginInformation().getVendorName();
+        }
+        if (author == null)
+        {
+            author = "(unknown)";
+        }
+        return author;
+    }
+
+    /**
+     * @return The name listings show, from the manifest of a zip extension or the plugin, falling back to the key
+     */
+    public String getDisplayName(Plugin plugin)
+    {
+        ExtensionClassificationCache.Classification classification = classificationCache.getClassification(plugin);
+        String name = "zip".equals(classification.getExtension()) ? classification.getName() : plugin.getName();
+        return name != null ? name : plugin.getKey();
+    }
+
+    private boolean containsText(Plugin plugin, String text)
+    {
+        ExtensionClassificationCache.Classification classification = classificationCache.getClassification(plugin);
+        String description = "zip".equals(classification.getExtension())
+                ? classification.getDescription()
+                : plugin.getPluginInformation().getDescription();
+        return plugin.getKey().toLowerCase().contains(text)
+                || getDisplayName(plugin).toLowerCase().contains(text)
+                || (description != null && description.toLowerCase().contains(text));
+    }
+}
@@ -0,0 +1,145 @@
+package com.atlassian.labs.speakeasy;
+
+/**
+ * Filters, sort order and page of a listing of extensions.  Unset filters match everything.
+ */
+public class PluginListQuery
+{
+    public static final int MAX_LIMIT = 500;
+
+    public enum Sort
+    {
+        NAME, AUTHOR, USERS, KEY
+    }
+
+    private int limit = MAX_LIMIT;
+    private int offset;
+    private Boolean enabled;
+    private Boolean available;
+    private String author;
+    private Boolean fork;
+    private String text;
+    private Sort sort = Sort.NAME;
+
+    public int getLimit()
+    {
+        return limit;
+    }
+
+    public PluginListQuery limit(Integer limit)
+    {
+        if (limit != null)
+        {
+            this.limit = Math.max(1, Math.min(MAX_LIMIT, limit));
+        }
+        return this;
+    }
+
+    public int getOffset()
+    {
+        return offset;
+    }
+
+    /**
+     * @param cursor A cursor returned with a previous page, or null to start from the beginning
+     */
+    public PluginListQuery cursor(String cursor)
+    {
+        if (cursor != null)
+        {
+            try
+            {
+                this.offset = Math.max(0, Integer.parseInt(cursor));
+            }
+            catch (NumberFormatException ex)
+            {
+                throw new IllegalArgumentException("Invalid cursor: " + cursor);
+            }
+        }
+        return this;
+    }
+
+    public String getNextCursor(int total)
+    {
+        return offset + limit < total ? String.valueOf(offset + limit) : null;
+    }
+
+    public Boolean getEnabled()
+    {
+        return enabled;
+    }
+
+    public PluginListQuery enabled(Boolean enabled)
+    {
+        this.enabled = enabled;
+        return this;
+    }
+
+    public Boolean getAvailable()
+    {
+        return available;
+    }
+
+    public PluginListQuery available(Boolean available)
+    {
+        this.available = available;
+        return this;
+    }
+
+    public String getAuthor()
+    {
+        return author;
+    }
+
+    public PluginListQuery author(String author)
+    {
+        this.author = author;
+        return this;
+    }
+
+    public Boolean getFork()
+    {
+        return fork;
+    }
+
+    public PluginListQuery fork(Boolean fork)
+    {
+        this.fork = fork;
+        return this;
+    }
+
+    public String getText()
+    {
+        return text;
+    }
+
+    /**
+     * @param text Text to look for in the key, name or description, ignoring case
+     */
+    public PluginListQuery text(String text)
+    {
+        this.text = text != null && text.trim().length() > 0 ? text.trim().toLowerCase() : null;
+        return this;
+    }
+
+    public Sort getSort()
+    {
+        return sort;
+    }
+
+    public PluginListQuery sort(String sort)
+    {
+        if (sort != null)
+        {
+            try
+            {
+                this.sort = Sort.valueOf(sort.toUpperCase());
+            }
+            catch (IllegalArgumentException ex)
+            {
+                throw new IllegalArgumentException("Invalid sort: " + sort);
+            }
+        }
+        return this;
+    }
+}
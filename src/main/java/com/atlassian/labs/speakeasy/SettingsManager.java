@@ -14,12 +14,16 @@ import java.util.concurrent.atomic.AtomicReference;
 public class SettingsManager
 {
     private final SpeakeasyData data;
+    private final UserPluginsCache userPluginsCache;
+    private final ExtensionChangeLog changeLog;
 
     private volatile Settings settings;
 
-    public SettingsManager(SpeakeasyData data)
+    public SettingsManager(SpeakeasyData data, UserPluginsCache userPluginsCache, ExtensionChangeLog changeLog)
     {
         this.data = data;
+        this.userPluginsCache = userPluginsCache;
+        this.changeLog = changeLog;
         setSettings(loadSettings());
     }
 
@@ -35,6 +39,8 @@ public class SettingsManager
         {
             value = JsonObjectMapper.write(settings);
             this.settings = JsonObjectMapper.read(Settings.class, data.saveSettings(value));
+            userPluginsCache.invalidateAll();
+            changeLog.reset();
             return getSettings();
         }
         catch (IOException e)
@@ -43,6 +49,17 @@ public class SettingsManager
         }
     }
 
+    /**
+     * Picks up settings written to storage directly, such as by an import
+     */
+    public Settings reloadSettings()
+    {
+        this.settings = loadSettings();
+        userPluginsCache.invalidateAll();
+        changeLog.reset();
+        return getSettings();
+    }
+
     private Settings loadSettings()
     {
         String value = data.getSettings();
@@ -1,55 +1,69 @@
 package com.atlassian.labs.speakeasy;
 
-import com.atlassian.labs.speakeasy.commonjs.descriptor.CommonJsModulesDescriptor;
 import com.atlassian.labs.speakeasy.data.SpeakeasyData;
 import com.atlassian.labs.speakeasy.install.PluginManager;
 import com.atlassian.labs.speakeasy.install.PluginOperationFailedException;
-import com.atlassian.labs.speakeasy.install.convention.JsonManifestHandler;
-import com.atlassian.labs.speakeasy.model.JsonManifest;
+import com.atlassian.labs.speakeasy.metrics.SpeakeasyMetrics;
+import com.atlassian.labs.speakeasy.model.BulkAccessRequest;
+import com.atlassian.labs.speakeasy.model.BulkAccessResult;
+import com.atlassian.labs.speakeasy.model.CacheStatistics;
+import com.atlassian.labs.speakeasy.model.MetricsReport;
+import com.atlassian.labs.speakeasy.model.PluginChanges;
 import com.atlassian.labs.speakeasy.model.RemotePlugin;
 import com.atlassian.labs.speakeasy.model.Settings;
+import com.atlassian.labs.speakeasy.model.UsageReport;
 import com.atlassian.labs.speakeasy.model.UserPlugins;
+import com.atlassian.labs.speakeasy.notification.Notification;
+import com.atlassian.labs.speakeasy.notification.NotificationQueue;
 import com.atlassian.labs.speakeasy.product.ProductAccessor;
+import com.atlassian.labs.speakeasy.usage.UsageCounters;
 import com.atlassian.labs.speakeasy.util.FeedBuilder;
 import com.atlassian.labs.speakeasy.util.JsonObjectMapper;
 import com.atlassian.plugin.ModuleDescriptor;
 import com.atlassian.plugin.Plugin;
 import com.atlassian.plugin.PluginAccessor;
-import com.atlassian.plugin.descriptors.UnloadableModuleDescriptor;
+import com.atlassian.plugin.event.PluginEventListener;
+import com.atlassian.plugin.event.PluginEventManager;
+import com.atlassian.plugin.event.events.PluginEnabledEvent;
 import com.atlassian.plugin.impl.UnloadablePlugin;
 import com.atlassian.plugin.webresource.UrlMode;
 import com.atlassian.plugin.webresource.WebResourceManager;
 import com.atlassian.sal.api.ApplicationProperties;
 import com.atlassian.sal.api.user.UserManager;
-import com.atlassian.sal.api.user.UserProfile;
 import com.google.common.base.Function;
 import com.google.common.base.Predicate;
 import com.google.common.collect.Lists;
-import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
 
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
-import static com.atlassian.labs.speakeasy.util.BundleUtil.findBundleForPlugin;
 import static com.google.common.collect.Iterables.filter;
 import static com.google.common.collect.Lists.newArrayList;
 import static com.google.common.collect.Lists.transform;
+import static com.google.common.collect.Maps.newHashMap;
 import static com.google.common.collect.Sets.newHashSet;
 import static java.util.Arrays.asList;
 
 /**
  *
  */
-public class SpeakeasyManager
+public class SpeakeasyManager implements DisposableBean
 {
     private final ApplicationProperties applicationProperties;
     private final PluginAccessor pluginAccessor;
@@ -57,31 +71,67 @@ public class SpeakeasyManager
     private final PluginManager pluginManager;
     private final ProductAccessor productAccessor;
     private final DescriptorGeneratorManager descriptorGeneratorManager;
-    private final JsonManifestHandler jsonManifestHandler;
     private final BundleContext bundleContext;
     private final PermissionManager permissionManager;
     private final UserManager userManager;
     private final SettingsManager settingsManager;
     private final WebResourceManager webResourceManager;
+    private final UserPluginsCache userPluginsCache;
+    private final PluginEventManager pluginEventManager;
+    private final SpeakeasyPluginRegistry pluginRegistry;
+    private final NotificationQueue notificationQueue;
+    private final ExtensionChangeLog changeLog;
+    private final ExtensionClassificationCache classificationCache;
+    private final AuthorProfileCache authorProfileCache;
+    private final UsageCounters usageCounters;
+    private final SpeakeasyMetrics metrics;
+    private final ForkIndex forkIndex;
+    private final PluginListMatcher pluginListMatcher;
     private final ModuleDescriptor unknownScreenshotDescriptor;
     private static final Logger log = LoggerFactory.getLogger(SpeakeasyManager.class);
 
 
-    public SpeakeasyManager(PluginAccessor pluginAccessor, SpeakeasyData data, PluginManager pluginManager, ProductAccessor productAccessor, DescriptorGeneratorManager descriptorGeneratorManager, JsonManifestHandler jsonManifestHandler, BundleContext bundleContext, PermissionManager permissionManager, UserManager userManager, SettingsManager settingsManager, ApplicationProperties applicationProperties, WebResourceManager webResourceManager)
+    public SpeakeasyManager(PluginAccessor pluginAccessor, SpeakeasyData data, PluginManager pluginManager, ProductAccessor productAccessor, DescriptorGeneratorManager descriptorGeneratorManager, BundleContext bundleContext, PermissionManager permissionManager, UserManager userManager, SettingsManager settingsManager, ApplicationProperties applicationProperties, WebResourceManager webResourceManager, UserPluginsCache userPluginsCache, PluginEventManager pluginEventManager, SpeakeasyPluginRegistry pluginRegistry, NotificationQueue notificationQueue, ExtensionChangeLog changeLog, ExtensionClassificationCache classificationCache, AuthorProfileCache authorProfileCache, UsageCounters usageCounters, SpeakeasyMetrics metrics)
     {
         this.descriptorGeneratorManager = descriptorGeneratorManager;
         this.pluginAccessor = pluginAccessor;
         this.data = data;
         this.pluginManager = pluginManager;
         this.productAccessor = productAccessor;
-        this.jsonManifestHandler = jsonManifestHandler;
         this.bundleContext = bundleContext;
         this.permissionManager = permissionManager;
         this.userManager = userManager;
         this.settingsManager = settingsManager;
         this.applicationProperties = applicationProperties;
         this.webResourceManager = webResourceManager;
+        this.userPluginsCache = userPluginsCache;
+        this.pluginEventManager = pluginEventManager;
+        this.pluginRegistry = pluginRegistry;
+        this.notificationQueue = notificationQueue;
+        this.changeLog = changeLog;
+        this.classificationCache = classificationCache;
+        this.authorProfileCache = authorProfileCache;
+        this.usageCounters = usageCounters;
+        this.metrics = metrics;
+        this.forkIndex = new ForkIndex();
+        this.pluginListMatcher = new PluginListMatcher(pluginAccessor, data, classificationCache);
         this.unknownScreenshotDescriptor = pluginAccessor.getPluginModule("com.atlassian.labs.speakeasy-plugin:shared");
+        pluginEventManager.register(this);
+    }
+
+    public void destroy() throws Exception
+    {
+        pluginEventManager.unregister(this);
+    }
+
+    @PluginEventListener
+    public void onPluginEnabled(PluginEnabledEvent event)
+    {
+        Plugin plugin = event.getPlugin();
+        if (RemotePlugin.getForkedPluginKey(plugin.getKey()) != null)
+        {
+            forkIndex.add(plugin.getKey(), getPluginAuthor(plugin));
+        }
     }
 
     public UserPlugins getRemotePluginList(String userName, String... modifiedKeys) throws UnauthorizedAccessException
@@ -91,12 +141,94 @@ public class SpeakeasyManager
     public UserPlugins getRemotePluginList(String userName, List<String> modifiedKeys) throws UnauthorizedAccessException
     {
         validateAccess(userName);
-        List<RemotePlugin> plugins = getAllRemoteSpeakeasyPlugins(userName);
-        UserPlugins userPlugins = new UserPlugins(plugins);
+        UserPlugins userPlugins = new UserPlugins(getCachedRemoteSpeakeasyPlugins(userName));
         userPlugins.setUpdated(modifiedKeys);
         return userPlugins;
     }
 
+    /**
+     * Lists a page of the extensions matching the query, in the same fork order as the full listing.  Matching and
+     * sorting only use what can be read cheaply, so only the extensions on the requested page are fully built.
+     */
+    public UserPlugins getRemotePluginList(final String userName, final PluginListQuery query) throws UnauthorizedAccessException
+    {
+        validateAccess(userName);
+        boolean canAuthor = canAuthorExtensions(userName);
+        List<Plugin> matching = newArrayList();
+        for (Plugin plugin : getAllSpeakeasyPlugins())
+        {
+            if ((canAuthor || RemotePlugin.getForkedPluginKey(plugin.getKey()) == null) && pluginListMatcher.matches(plugin, userName, query))
+            {
+                matching.add(plugin);
+            }
+        }
+        Collections.sort(matching, pluginListMatcher.createComparator(query.getSort()));
+        // forks follow the extension they were forked from, as in the unpaged listing
+        matching = UserPlugins.groupForks(matching, new Function<Plugin, String>()
+        {
+            public String apply(Plugin from)
+            {
+                return from.getKey();
+            }
+        });
+
+        int total = matching.size();
+        int from = Math.min(query.getOffset(), total);
+        int to = Math.min(from + query.getLimit(), total);
+        List<Plugin> pagePlugins = matching.subList(from, to);
+        ListingAuthors authors = resolveAuthors(pagePlugins);
+        List<RemotePlugin> page = newArrayList();
+        for (Plugin plugin : pagePlugins)
+        {
+            page.add(toRemotePlugin(plugin, userName, authors));
+        }
+        return new UserPlugins(page, total, query.getNextCursor(total));
+    }
+
+    /**
+     * Gets the extensions that changed after a version of the change log, waiting for changes if there are none yet.
+     *
+     * @param since The version from the last call, or null to only get the current version
+     * @param waitMillis How long to wait for changes
+     */
+    public PluginChanges getChanges(String userName, Long since, long waitMillis) throws UnauthorizedAccessException, InterruptedException
+    {
+        validateAccess(userName);
+        if (since == null)
+        {
+            return new PluginChanges(changeLog.getVersion(), false, Collections.<RemotePlugin>emptyList(), Collections.<String>emptyList());
+        }
+        ExtensionChangeLog.Changes changes = changeLog.waitForChangesSince(since, waitMillis);
+        if (changes.isReset())
+        {
+            return new PluginChanges(changes.getVersion(), true, Collections.<RemotePlugin>emptyList(), Collections.<String>emptyList());
+        }
+
+        boolean canAuthor = canAuthorExtensions(userName);
+        Set<String> speakeasyKeys = newHashSet(pluginRegistry.getPluginKeys());
+        List<Plugin> changed = newArrayList();
+        List<String> removed = newArrayList();
+        for (String pluginKey : changes.getPluginKeys())
+        {
+            Plugin plugin = pluginAccessor.getPlugin(pluginKey);
+            if (plugin == null || (!canAuthor && RemotePlugin.getForkedPluginKey(pluginKey) != null))
+            {
+                removed.add(pluginKey);
+            }
+            else if (speakeasyKeys.contains(pluginKey))
+            {
+                changed.add(plugin);
+            }
+        }
+        ListingAuthors authors = resolveAuthors(changed);
+        List<RemotePlugin> changedRemotePlugins = newArrayList();
+        for (Plugin plugin : changed)
+        {
+            changedRemotePlugins.add(toRemotePlugin(plugin, userName, authors));
+        }
+        return new PluginChanges(changes.getVersion(), false, changedRemotePlugins, removed);
+    }
+
     public String getPluginFeed(String userName) throws UnauthorizedAccessException
     {
         validateAccess(userName);
@@ -112,7 +244,7 @@ public class SpeakeasyManager
     {
         validateAccess(userName);
         Plugin plugin = getPlugin(pluginKey);
-        return getRemotePlugin(plugin, userName, getAllSpeakeasyPlugins());
+        return getRemotePlugin(plugin, userName, null);
     }
 
     private Plugin getPlugin(String pluginKey)
@@ -129,12 +261,8 @@ public class SpeakeasyManager
     {
         validateAccess(user);
         List<String> affectedPluginKeys = new ArrayList<String>();
-        List<String> accessList = data.getUsersList(pluginKey);
-        if (!accessList.contains(user))
+        if (data.addUser(pluginKey, user))
         {
-            accessList.add(user);
-            data.saveUsersList(pluginKey, accessList);
-            descriptorGeneratorManager.refreshGeneratedDescriptorsForPlugin(pluginKey);
             affectedPluginKeys.add(pluginKey);
         }
 
@@ -142,15 +270,14 @@ public class SpeakeasyManager
         RemotePlugin targetPlugin = getRemotePlugin(pluginKey, user);
         String parentKey = targetPlugin.getForkedPluginKey() != null ? targetPlugin.getForkedPluginKey() : targetPlugin.getKey();
 
-        for (Plugin plugin : getAllSpeakeasyPlugins())
+        Set<String> relatedKeys = newHashSet(getInstalledForks(parentKey));
+        relatedKeys.add(parentKey);
+        relatedKeys.remove(targetPlugin.getKey());
+        for (String relatedKey : relatedKeys)
         {
-            if (!plugin.getKey().equals(targetPlugin.getKey()) && (plugin.getKey().equals(parentKey)
-                    || parentKey.equals(RemotePlugin.getForkedPluginKey(plugin.getKey()))))
+            if (removeFromAccessList(relatedKey, user) != null)
             {
-                if (removeFromAccessList(plugin.getKey(), user) != null)
-                {
-                    affectedPluginKeys.add(plugin.getKey());
-                }
+                affectedPluginKeys.add(relatedKey);
             }
         }
 
@@ -167,22 +294,85 @@ public class SpeakeasyManager
         return disallowedPluginKey;
     }
 
+    /**
+     * Enables or disables an extension for many users, and the members of groups, at once.  The access list is written
+     * and the extension refreshed once, and the author gets one notification for the lot.
+     */
+    public BulkAccessResult setBulkAccess(String pluginKey, BulkAccessRequest request, String adminUser) throws UnauthorizedAccessException
+    {
+        validateAdmin(adminUser);
+        if (!pluginRegistry.isExtension(pluginKey))
+        {
+            throw new PluginOperationFailedException("Not a Speakeasy extension: " + pluginKey, pluginKey);
+        }
+
+        BulkAccessResult result = new BulkAccessResult(pluginKey, request.isEnabled());
+        Set<String> users = new LinkedHashSet<String>(request.getUsers());
+        for (String group : request.getGroups())
+        {
+            Collection<String> members = productAccessor.getGroupMembers(group);
+            if (members != null)
+            {
+                users.addAll(members);
+            }
+            else
+            {
+                result.getRejectedGroups().add(group);
+            }
+        }
+        List<String> candidates = newArrayList();
+        for (String user : users)
+        {
+            if (request.isEnabled() && (userManager.getUserProfile(user) == null
+                    || !permissionManager.canAccessSpeakeasy(user) || !permissionManager.canEnableExtensions(user)))
+            {
+                result.getRejected().add(user);
+            }
+            else
+            {
+                candidates.add(user);
+            }
+        }
+
+        Set<String> changed = request.isEnabled()
+                ? data.addUsers(pluginKey, candidates)
+                : data.removeUsers(pluginKey, candidates);
+        for (String user : candidates)
+        {
+            (changed.contains(user) ? result.getChanged() : result.getUnchanged()).add(user);
+        }
+
+        if (request.isEnabled() && !changed.isEmpty())
+        {
+            // as when enabling one at a time, only one fork of an extension can be enabled
+            String parentKey = RemotePlugin.getForkedPluginKey(pluginKey) != null ? RemotePlugin.getForkedPluginKey(pluginKey) : pluginKey;
+            Set<String> relatedKeys = newHashSet(getInstalledForks(parentKey));
+            relatedKeys.add(parentKey);
+            relatedKeys.remove(pluginKey);
+            for (String relatedKey : relatedKeys)
+            {
+                data.removeUsers(relatedKey, changed);
+            }
+            sendBulkEnabledEmail(pluginKey, adminUser, changed);
+        }
+        log.info("Admin '{}' {} Speakeasy extension '{}' for " + changed.size() + " users",
+                new Object[] {adminUser, request.isEnabled() ? "enabled" : "disabled", pluginKey});
+        return result;
+    }
+
     public boolean hasAccess(String pluginKey, String remoteUser) throws UnauthorizedAccessException
     {
         validateAccess(remoteUser);
-        return data.getUsersList(pluginKey).contains(remoteUser);
+        return data.hasAccess(pluginKey, remoteUser);
     }
 
     public void disallowAllUserAccess(String user) throws UnauthorizedAccessException
     {
         validateAccess(user);
-        for (Plugin plugin : pluginAccessor.getEnabledPlugins())
+        Set<String> pluginKeys = data.getPluginKeysForUser(user);
+        for (String pluginKey : pluginKeys)
         {
-            if (data.getUsersList(plugin.getKey()).contains(user))
-            {
-                removeFromAccessList(plugin.getKey(), user);
-            }
-            descriptorGeneratorManager.refreshGeneratedDescriptorsForPlugin(plugin.getKey());
+            removeUser(pluginKey, user);
         }
         log.info("Disallowed  '{}' to access all Speakeasy extensions", user);
     }
@@ -210,6 +400,9 @@ public class SpeakeasyManager
             }
             disallowAllPluginAccess(pluginKey, user);
             pluginManager.uninstall(pluginKey, user);
+            forkIndex.remove(pluginKey);
+            changeLog.record(pluginKey);
+            classificationCache.evict(pluginKey);
             log.info("Uninstalled extension '{}' by user '{}'", pluginKey, user);
             return getRemotePluginList(user, keysModified);
         }
@@ -234,6 +427,7 @@ public class SpeakeasyManager
                 throw new PluginOperationFailedException("Not authorized to fork " + pluginKey, pluginKey);
             }
             String forkedPluginKey = pluginManager.forkAndInstall(pluginKey, plugin.getPluginType(), remoteUser, description);
+            forkIndex.add(forkedPluginKey, remoteUser);
             List<String> modifiedKeys = new ArrayList<String>();
             modifiedKeys.add(forkedPluginKey);
             if (hasAccess(pluginKey, remoteUser))
@@ -364,6 +558,7 @@ public class SpeakeasyManager
                 throw new PluginOperationFailedException("Not authorized to edit " + pluginKey, pluginKey);
             }
             String installedPluginKey = pluginManager.saveAndRebuild(pluginKey, plugin.getPluginType(), fileName, contents, user);
+            forkIndex.add(installedPluginKey, user);
             log.info("Saved and rebuilt extension '{}' by user '{}'", pluginKey, user);
             return getRemotePlugin(installedPluginKey, user);
         }
@@ -381,6 +576,7 @@ public class SpeakeasyManager
     {
         validateAuthor(user);
         String pluginKey = pluginManager.install(uploadedFile, user);
+        forkIndex.add(pluginKey, user);
         log.info("Installed extension '{}' by user '{}'", pluginKey, user);
         return getRemotePluginList(user, pluginKey);
     }
@@ -395,6 +591,7 @@ public class SpeakeasyManager
         try
         {
             pluginManager.createExtension(pluginType, pluginKey, remoteUser, description, name);
+            forkIndex.add(pluginKey, remoteUser);
             List<String> modifiedKeys = new ArrayList<String>();
             modifiedKeys.add(pluginKey);
             log.info("Created extension '{}' by user '{}'", pluginKey, remoteUser);
@@ -416,6 +613,51 @@ public class SpeakeasyManager
         return settingsManager.getSettings();
     }
 
+    public CacheStatistics getProfileCacheStatistics(String userName) throws UnauthorizedAccessException
+    {
+        validateAdmin(userName);
+        return authorProfileCache.getStatistics();
+    }
+
+    public UsageReport getUsageReport(String userName) throws UnauthorizedAccessException
+    {
+        validateAdmin(userName);
+        UsageReport report = new UsageReport();
+        for (String pluginKey : pluginRegistry.getPluginKeys())
+        {
+            report.getExtensions().add(usageCounters.getUsage(pluginKey));
+        }
+        return report;
+    }
+
+    public MetricsReport getMetrics(String userName) throws UnauthorizedAccessException
+    {
+        validateAdmin(userName);
+        return metrics.getReport();
+    }
+
+    public void exportState(OutputStream out, String userName) throws UnauthorizedAccessException, IOException
+    {
+        validateAdmin(userName);
+        data.exportState(out);
+        log.info("Exported Speakeasy state for user '{}'", userName);
+    }
+
+    /**
+     * Replaces the settings and extension access with those of an export.  The whole export is held in memory while it
+     * is read, growing with the number of extensions times the number of users with access to each.  Changes made while
+     * it is applied wait for it, and the caches reset afterwards rebuild from the imported data when next used.
+     */
+    public void importState(InputStream in, String userName) throws UnauthorizedAccessException, IOException
+    {
+        validateAdmin(userName);
+        Set<String> pluginKeys = data.importState(in);
+        settingsManager.reloadSettings();
+        // the authors of forks may have changed
+        forkIndex.reset();
+        log.info("Imported Speakeasy state of " + pluginKeys.size() + " extensions for user '{}'", userName);
+    }
+
     public boolean doesAnyGroupHaveAccess()
     {
         return !settingsManager.getSettings().getAccessGroups().isEmpty();
@@ -456,108 +698,138 @@ public class SpeakeasyManager
 
     private void disallowAllPluginAccess(String pluginKey, String user)
     {
-        List<String> accessList = data.getUsersList(pluginKey);
-        accessList.clear();
-        data.saveUsersList(pluginKey, accessList);
-        descriptorGeneratorManager.refreshGeneratedDescriptorsForPlugin(pluginKey);
+        data.saveUsersList(pluginKey, Collections.<String>emptyList());
     }
 
     private String removeFromAccessList(String pluginKey, String user)
     {
-        List<String> accessList = data.getUsersList(pluginKey);
-        if (accessList.contains(user))
+        if (removeUser(pluginKey, user))
         {
-            accessList.remove(user);
-            data.saveUsersList(pluginKey, accessList);
-
-            descriptorGeneratorManager.refreshGeneratedDescriptorsForPlugin(pluginKey);
             return pluginKey;
         }
         return null;
     }
 
-    private void sendEnabledEmail(final String pluginKey, final String user) throws UnauthorizedAccessException
+    private boolean removeUser(String pluginKey, String user)
     {
-        final String userFullName = productAccessor.getUserFullName(user);
-        String pluginAuthor = data.getPluginAuthor(pluginKey);
+        return data.removeUser(pluginKey, user);
+    }
+
+    private void sendEnabledEmail(final String pluginKey, final String user)
+    {
+        final String pluginAuthor = data.getPluginAuthor(pluginKey);
         if (pluginAuthor != null && !user.equals(pluginAuthor))
         {
-            final Set<RemotePlugin> commonExtensions = new HashSet<RemotePlugin>();
-            final Set<RemotePlugin> suggestedExtensions = new HashSet<RemotePlugin>();
-            for (RemotePlugin plugin : getAllRemoteSpeakeasyPlugins(user))
+            notificationQueue.submit(new Notification(pluginAuthor, "enabled")
             {
-                if (plugin.isEnabled())
+                public Map<String, Object> createContext() throws UnauthorizedAccessException
                 {
-                    List<String> accessList = data.getUsersList(plugin.getKey());
-                    if (accessList.contains(pluginAuthor))
-                    {
-                        commonExtensions.add(plugin);
-                    }
-                    else
+                    Set<RemotePlugin> commonExtensions = new HashSet<RemotePlugin>();
+                    Set<RemotePlugin> suggestedExtensions = new HashSet<RemotePlugin>();
+                    for (RemotePlugin plugin : getCachedRemoteSpeakeasyPlugins(user))
                     {
-                        suggestedExtensions.add(plugin);
+                        if (plugin.isEnabled())
+                        {
+                            if (data.hasAccess(plugin.getKey(), pluginAuthor))
+                            {
+                                commonExtensions.add(plugin);
+                            }
+                            else
+                            {
+                                suggestedExtensions.add(plugin);
+                            }
+                        }
                     }
+                    Map<String, Object> context = new HashMap<String, Object>();
+                    context.put("plugin", getRemotePlugin(pluginKey, user));
+                    context.put("enablerFullName", authorProfileCache.getFullName(user));
+                    context.put("enabler", user);
+                    context.put("commonExtensions", commonExtensions);
+                    context.put("suggestedExtensions", suggestedExtensions);
+                    context.put("enabledTotal", data.getUserCount(pluginKey));
+                    return context;
                 }
+            });
+        }
+    }
 
-            }
-            productAccessor.sendEmail(pluginAuthor, "email/enabled-subject.vm", "email/enabled-body.vm", new HashMap<String, Object>()
-            {{
-                    put("plugin", getRemotePlugin(pluginKey, user));
-                    put("enablerFullName", userFullName);
-                    put("enabler", user);
-                    put("commonExtensions", commonExtensions);
-                    put("suggestedExtensions", suggestedExtensions);
-                    put("enabledTotal", data.getUsersList(pluginKey).size());
-                }});
+    private void sendBulkEnabledEmail(final String pluginKey, final String admin, Collection<String> users)
+    {
+        String pluginAuthor = data.getPluginAuthor(pluginKey);
+        if (pluginAuthor != null && !admin.equals(pluginAuthor))
+        {
+            final int addedTotal = users.size();
+            notificationQueue.submit(new Notification(pluginAuthor, "bulk-enabled")
+            {
+                public Map<String, Object> createContext() throws UnauthorizedAccessException
+                {
+                    Map<String, Object> context = new HashMap<String, Object>();
+                    context.put("plugin", getRemotePlugin(pluginKey, admin));
+                    context.put("enablerFullName", authorProfileCache.getFullName(admin));
+                    context.put("enabler", admin);
+                    context.put("addedTotal", addedTotal);
+                    context.put("enabledTotal", data.getUserCount(pluginKey));
+                    return context;
+                }
+            });
         }
     }
 
-    private void sendForkedEmail(final String pluginKey, final String forkedPluginKey, final String user) throws UnauthorizedAccessException
+    private void sendForkedEmail(final String pluginKey, final String forkedPluginKey, final String user)
     {
-        final String userFullName = productAccessor.getUserFullName(user);
         String pluginAuthor = data.getPluginAuthor(pluginKey);
         if (pluginAuthor != null && !user.equals(pluginAuthor))
         {
-            final Set<RemotePlugin> otherForkedExtensions = new HashSet<RemotePlugin>();
-            for (RemotePlugin plugin : getAllRemoteSpeakeasyPlugins(user))
+            notificationQueue.submit(new Notification(pluginAuthor, "forked")
             {
-                if (user.equals(plugin.getAuthor()) && plugin.getForkedPluginKey() != null && !forkedPluginKey.equals(plugin.getKey()))
+                public Map<String, Object> createContext() throws UnauthorizedAccessException
                 {
-                    otherForkedExtensions.add(getRemotePlugin(plugin.getForkedPluginKey(), user));
+                    Set<RemotePlugin> otherForkedExtensions = new HashSet<RemotePlugin>();
+                    for (RemotePlugin plugin : getCachedRemoteSpeakeasyPlugins(user))
+                    {
+                        if (user.equals(plugin.getAuthor()) && plugin.getForkedPluginKey() != null && !forkedPluginKey.equals(plugin.getKey()))
+                        {
+                            otherForkedExtensions.add(getRemotePlugin(plugin.getForkedPluginKey(), user));
+                        }
+                    }
+                    Map<String, Object> context = new HashMap<String, Object>();
+                    context.put("plugin", getRemotePlugin(pluginKey, user));
+                    context.put("productAccessor", productAccessor);
+                    context.put("forkedPlugin", getRemotePlugin(forkedPluginKey, user));
+                    context.put("forkerFullName", authorProfileCache.getFullName(user));
+                    context.put("forker", user);
+                    context.put("otherForkedExtensions", otherForkedExtensions);
+                    return context;
                 }
-
-            }
-            productAccessor.sendEmail(pluginAuthor, "email/forked-subject.vm", "email/forked-body.vm", new HashMap<String,Object>() {{
-                RemotePlugin originalPlugin = getRemotePlugin(pluginKey, user);
-                put("plugin", originalPlugin);
-                put("productAccessor", productAccessor);
-                put("forkedPlugin", getRemotePlugin(forkedPluginKey, user));
-                put("forkerFullName", userFullName);
-                put("forker", user);
-                put("otherForkedExtensions", otherForkedExtensions);
-            }});
+            });
         }
     }
 
-    private RemotePlugin getRemotePlugin(Plugin plugin, String userName, Iterable<Plugin> speakeasyPlugins) throws PluginOperationFailedException
+    /**
+     * @param authors Authors resolved for the whole listing, or null to look up the author of just this plugin
+     */
+    private RemotePlugin getRemotePlugin(Plugin plugin, String userName, ListingAuthors authors) throws PluginOperationFailedException
     {
         RemotePlugin remotePlugin = new RemotePlugin(plugin);
         boolean canAuthor = permissionManager.canAuthorExtensions(userName);
-        String author = getPluginAuthor(plugin);
+        String author = authors != null ? authors.getAuthor(plugin) : null;
+        if (author == null)
+        {
+            author = getPluginAuthor(plugin);
+        }
         remotePlugin.setAuthor(author);
-        UserProfile profile = userManager.getUserProfile(author);
-        remotePlugin.setAuthorDisplayName(profile != null && profile.getFullName() != null
-                ? profile.getFullName()
-                : author);
-        List<String> accessList = data.getUsersList(plugin.getKey());
-        remotePlugin.setNumUsers(accessList.size());
-
-        if (plugin.getResource("/" + JsonManifest.ATLASSIAN_EXTENSION_PATH) != null)
-        {
-            JsonManifest mf = jsonManifestHandler.read(plugin);
-            remotePlugin.setDescription(mf.getDescription());
-            remotePlugin.setName(mf.getName());
-            remotePlugin.setExtension("zip");
+        String authorDisplayName = authors != null ? authors.getDisplayName(author) : null;
+        remotePlugin.setAuthorDisplayName(authorDisplayName != null
+                ? authorDisplayName
+                : authorProfileCache.getDisplayName(author));
+        remotePlugin.setNumUsers(data.getUserCount(plugin.getKey()));
+
+        ExtensionClassificationCache.Classification classification = classificationCache.getClassification(plugin);
+        remotePlugin.setExtension(classification.getExtension());
+        if ("zip".equals(classification.getExtension()))
+        {
+            remotePlugin.setDescription(classification.getDescription());
+            remotePlugin.setName(classification.getName());
         }
         // try to detect a failed install of a zip plugin
         else if (plugin instanceof UnloadablePlugin &&
@@ -569,14 +841,6 @@ public class SpeakeasyManager
             remotePlugin.setName(plugin.getName());
             remotePlugin.setDescription(((UnloadablePlugin) plugin).getErrorText());
         }
-        else if (plugin.getResource("/atlassian-plugin.xml") != null)
-        {
-            remotePlugin.setExtension("jar");
-        }
-        else
-        {
-            remotePlugin.setExtension("xml");
-        }
         if (remotePlugin.getName() == null)
         {
             remotePlugin.setName(remotePlugin.getKey());
@@ -586,15 +850,15 @@ public class SpeakeasyManager
             remotePlugin.setDescription("");
         }
         boolean isAuthor = userName.equals(remotePlugin.getAuthor());
-        boolean pureSpeakeasy = onlyContainsSpeakeasyModules(plugin);
+        boolean pureSpeakeasy = classification.isPureSpeakeasy();
 
         if (pluginAccessor.isPluginEnabled(plugin.getKey()))
         {
-            Set<String> unresolvedExternalModuleDependencies = findUnresolvedCommonJsDependencies(plugin);
+            Set<String> unresolvedExternalModuleDependencies = classificationCache.getUnresolvedCommonJsDependencies(plugin);
             if (unresolvedExternalModuleDependencies.isEmpty())
             {
                 remotePlugin.setAvailable(true);
-                remotePlugin.setEnabled(accessList.contains(userName));
+                remotePlugin.setEnabled(data.hasAccess(plugin.getKey(), userName));
                 remotePlugin.setCanEnable(!remotePlugin.isEnabled());
                 remotePlugin.setCanDisable(remotePlugin.isEnabled());
             }
@@ -616,15 +880,9 @@ public class SpeakeasyManager
 
 
         // if the user has already forked this, don't let them fork again
-        if (!remotePlugin.isFork())
+        if (!remotePlugin.isFork() && hasForked(remotePlugin.getKey(), userName))
         {
-            for (Plugin plug : speakeasyPlugins)
-            {
-                if (remotePlugin.getKey().equals(RemotePlugin.getForkedPluginKey(plug.getKey())) && userName.equals(getPluginAuthor(plug)))
-                {
-                    remotePlugin.setCanFork(false);
-                }
-            }
+            remotePlugin.setCanFork(false);
         }
 
         // if the user is an admin and admins aren't allowed to enable
@@ -637,49 +895,56 @@ public class SpeakeasyManager
         return remotePlugin;
     }
 
-    private Set<String> findUnresolvedCommonJsDependencies(Plugin plugin)
+    private boolean hasForked(String pluginKey, String user)
     {
-        Set<String> unresolved = newHashSet();
-        for (ModuleDescriptor descriptor : plugin.getModuleDescriptors())
+        ForkIndex index = getForkIndex();
+        String forkKey = index.getFork(pluginKey, user);
+        if (forkKey != null && pluginAccessor.getPlugin(forkKey) == null)
         {
-            if (descriptor instanceof CommonJsModulesDescriptor)
-            {
-                unresolved.addAll(((CommonJsModulesDescriptor)descriptor).getUnresolvedExternalModuleDependencies());
-            }
+            // the fork was uninstalled behind our back
+            index.remove(forkKey);
+            forkKey = null;
         }
-        return unresolved;
+        return forkKey != null;
     }
 
-    private String getPluginAuthor(Plugin plugin)
+    private Set<String> getInstalledForks(String parentKey)
     {
-        String author = data.getPluginAuthor(plugin.getKey());
-        if (author == null)
+        ForkIndex index = getForkIndex();
+        Set<String> forkKeys = index.getForks(parentKey);
+        for (Iterator<String> i = forkKeys.iterator(); i.hasNext(); )
         {
-            author = plugin.getPluginInformation().getVendorName();
-        }
-        if (author == null)
-        {
-            author = "(unknown)";
+            String forkKey = i.next();
+            if (pluginAccessor.getPlugin(forkKey) == null)
+            {
+                // the fork was uninstalled behind our back
+                index.remove(forkKey);
+                i.remove();
+            }
         }
-        return author;
+        return forkKeys;
     }
 
-    private boolean onlyContainsSpeakeasyModules(Plugin plugin)
+    private ForkIndex getForkIndex()
     {
-        Bundle bundle = findBundleForPlugin(bundleContext, plugin.getKey());
-        String stateIdentifier = String.valueOf(bundle.getLastModified());
-        for (ModuleDescriptor descriptor : plugin.getModuleDescriptors())
+        if (!forkIndex.isBuilt())
         {
-            if (!(descriptor instanceof DescriptorGenerator)
-                    // FIXME: these checks are hacks
-                    && !descriptor.getKey().endsWith(stateIdentifier) && !descriptor.getKey().endsWith("-modules")
-                    && !(descriptor instanceof UnloadableModuleDescriptor)
-                    && !"screenshot".equals(descriptor.getKey()))
+            Map<String, String> authorsByForkKey = newHashMap();
+            for (Plugin plugin : getAllSpeakeasyPlugins())
             {
-                return false;
+                if (RemotePlugin.getForkedPluginKey(plugin.getKey()) != null)
+                {
+                    authorsByForkKey.put(plugin.getKey(), getPluginAuthor(plugin));
+                }
             }
+            forkIndex.build(authorsByForkKey);
         }
-        return true;
+        return forkIndex;
+    }
+
+    private String getPluginAuthor(Plugin plugin)
+    {
+        return pluginListMatcher.getAuthor(plugin);
     }
 
     private void validateAccess(String userName) throws UnauthorizedAccessException
@@ -709,25 +974,56 @@ public class SpeakeasyManager
         }
     }
 
+    /**
+     * Works out the author of each plugin in a listing once, then their display names together
+     */
+    private ListingAuthors resolveAuthors(Collection<Plugin> plugins)
+    {
+        Map<String, String> authorsByPluginKey = newHashMap();
+        for (Plugin plugin : plugins)
+        {
+            authorsByPluginKey.put(plugin.getKey(), getPluginAuthor(plugin));
+        }
+        return new ListingAuthors(authorsByPluginKey, authorProfileCache.resolveDisplayNames(authorsByPluginKey.values()));
+    }
+
+    private RemotePlugin toRemotePlugin(Plugin plugin, String userName, ListingAuthors authors)
+    {
+        try
+        {
+            return getRemotePlugin(plugin, userName, authors);
+        }
+        catch (RuntimeException ex)
+        {
+            log.error("Unable to load plugin '" + plugin.getKey() + "'", ex);
+            RemotePlugin remotePlugin = new RemotePlugin(plugin);
+            remotePlugin.setDescription("Unable to load due to " + ex.getMessage());
+            return remotePlugin;
+        }
+    }
+
+    private List<RemotePlugin> getCachedRemoteSpeakeasyPlugins(String userName)
+    {
+        List<RemotePlugin> plugins = userPluginsCache.get(userName);
+        if (plugins == null)
+        {
+            long generation = userPluginsCache.getGeneration();
+            plugins = getAllRemoteSpeakeasyPlugins(userName);
+            userPluginsCache.put(userName, generation, plugins);
+        }
+        return plugins;
+    }
+
     private List<RemotePlugin> getAllRemoteSpeakeasyPlugins(final String userName)
     {
         final List<Plugin> rawPlugins = getAllSpeakeasyPlugins();
         final boolean canAuthor = canAuthorExtensions(userName);
+        final ListingAuthors authors = resolveAuthors(rawPlugins);
         return newArrayList(filter(transform(rawPlugins, new Function<Plugin, RemotePlugin>()
         {
             public RemotePlugin apply(Plugin from)
             {
-                try
-                {
-                    return getRemotePlugin(from, userName, rawPlugins);
-                }
-                catch (RuntimeException ex)
-                {
-                    log.error("Unable to load plugin '" + from.getKey() + "'", ex);
-                    RemotePlugin plugin = new RemotePlugin(from);
-                    plugin.setDescription("Unable to load due to " + ex.getMessage());
-                    return plugin;
-                }
+                return toRemotePlugin(from, userName, authors);
             }
         }), new Predicate<RemotePlugin>()
         {
@@ -740,19 +1036,29 @@ public class SpeakeasyManager
 
     private List<Plugin> getAllSpeakeasyPlugins()
     {
-        List<Plugin> plugins = new ArrayList<Plugin>();
-        for (Plugin plugin : pluginAccessor.getPlugins())
+        return pluginRegistry.getPlugins();
+    }
+
+    private static class ListingAuthors
+    {
+        private final Map<String, String> authorsByPluginKey;
+        private final Map<String, String> displayNames;
+
+        public ListingAuthors(Map<String, String> authorsByPluginKey, Map<String, String> displayNames)
         {
-            for (ModuleDescriptor moduleDescriptor : plugin.getModuleDescriptors())
-            {
-                if (moduleDescriptor instanceof DescriptorGenerator)
-                {
-                    plugins.add(plugin);
-                    break;
-                }
-            }
+            this.authorsByPluginKey = authorsByPluginKey;
+            this.displayNames = displayNames;
+        }
+
+        public String getAuthor(Plugin plugin)
+        {
+            return authorsByPluginKey.get(plugin.getKey());
+        }
+
+        public String getDisplayName(String author)
+        {
+            return displayNames.get(author);
         }
-        return plugins;
     }
 
 }
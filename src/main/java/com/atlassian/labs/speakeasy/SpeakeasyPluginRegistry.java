@@ -0,0 +1,139 @@
+package com.atlassian.labs.speakeasy;
+
+import com.atlassian.labs.speakeasy.data.InstalledExtensions;
+import com.atlassian.plugin.ModuleDescriptor;
+import com.atlassian.plugin.Plugin;
+import com.atlassian.plugin.PluginAccessor;
+import com.atlassian.plugin.event.PluginEventListener;
+import com.atlassian.plugin.event.PluginEventManager;
+import com.atlassian.plugin.event.events.PluginEnabledEvent;
+import com.atlassian.plugin.event.events.PluginFrameworkStartedEvent;
+import com.atlassian.plugin.event.events.PluginModuleEnabledEvent;
+import org.springframework.beans.factory.DisposableBean;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tracks which plugins contain {@link DescriptorGenerator} modules, so finding all Speakeasy extensions doesn't require
+ * walking every module of every installed plugin.  Keys are picked up from plugin and module enabled events, and
+ * plugins that have been uninstalled or no longer contain a generator are dropped when read.
+ */
+public class SpeakeasyPluginRegistry implements InstalledExtensions, DisposableBean
+{
+    private final PluginAccessor pluginAccessor;
+    private final PluginEventManager pluginEventManager;
+    private final Set<String> pluginKeys = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    public SpeakeasyPluginRegistry(PluginAccessor pluginAccessor, PluginEventManager pluginEventManager)
+    {
+        this.pluginAccessor = pluginAccessor;
+        this.pluginEventManager = pluginEventManager;
+        pluginEventManager.register(this);
+        scan();
+    }
+
+    /**
+     * @return All installed plugins that contain at least one descriptor generator, whether enabled or not
+     */
+    public List<Plugin> getPlugins()
+    {
+        List<Plugin> plugins = new ArrayList<Plugin>();
+        for (String key : pluginKeys)
+        {
+            Plugin plugin = pluginAccessor.getPlugin(key);
+            if (plugin != null && containsDescriptorGenerator(plugin))
+            {
+                plugins.add(plugin);
+            }
+            else
+            {
+                pluginKeys.remove(key);
+            }
+        }
+        return plugins;
+    }
+
+    /**
+     * @return The keys of all plugins returned by {@link #getPlugins()}
+     */
+    public List<String> getPluginKeys()
+    {
+        List<String> keys = new ArrayList<String>();
+        for (Plugin plugin : getPlugins())
+        {
+            keys.add(plugin.getKey());
+        }
+        return keys;
+    }
+
+    /**
+     * @return True if the plugin is installed and contains at least one descriptor generator
+     */
+    public boolean isExtension(String pluginKey)
+    {
+        Plugin plugin = pluginAccessor.getPlugin(pluginKey);
+        return plugin != null && containsDescriptorGenerator(plugin);
+    }
+
+    @PluginEventListener
+    public void onPluginEnabled(PluginEnabledEvent event)
+    {
+        track(event.getPlugin());
+    }
+
+    @PluginEventListener
+    public void onPluginModuleEnabled(PluginModuleEnabledEvent event)
+    {
+        if (event.getModule() instanceof DescriptorGenerator)
+        {
+            pluginKeys.add(event.getModule().getPluginKey());
+        }
+    }
+
+    @PluginEventListener
+    public void onPluginFrameworkStarted(PluginFrameworkStartedEvent event)
+    {
+        scan();
+    }
+
+    public void destroy() throws Exception
+    {
+        pluginEventManager.unregister(this);
+    }
+
+    private void scan()
+    {
+        for (Plugin plugin : pluginAccessor.getPlugins())
+        {
+            track(plugin);
+        }
+    }
+
+    private void track(Plugin plugin)
+    {
+        if (containsDescriptorGenerator(plugin))
+        {
+            pluginKeys.add(plugin.getKey());
+        }
+        else
+        {
+            pluginKeys.remove(plugin.getKey());
+        }
+    }
+
+    private static boolean containsDescriptorGenerator(Plugin plugin)
+    {
+        for (ModuleDescriptor moduleDescriptor : plugin.getModuleDescriptors())
+        {
+            if (moduleDescriptor instanceof DescriptorGenerator)
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,173 @@
+package com.atlassian.labs.speakeasy;
+
+import com.atlassian.labs.speakeasy.commonjs.descriptor.CommonJsModulesDescriptor;
+import com.atlassian.labs.speakeasy.data.ExtensionDataListener;
+import com.atlassian.labs.speakeasy.data.SpeakeasyData;
+import com.atlassian.labs.speakeasy.model.RemotePlugin;
+import com.atlassian.plugin.ModuleDescriptor;
+import com.atlassian.plugin.Plugin;
+import com.atlassian.plugin.event.PluginEventListener;
+import com.atlassian.plugin.event.PluginEventManager;
+import com.atlassian.plugin.event.events.PluginDisabledEvent;
+import com.atlassian.plugin.event.events.PluginEnabledEvent;
+import com.atlassian.plugin.event.events.PluginModuleDisabledEvent;
+import com.atlassian.plugin.event.events.PluginModuleEnabledEvent;
+import org.springframework.beans.factory.DisposableBean;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caches the list of extensions as seen by each user.  Every view is thrown away as soon as anything that feeds into
+ * it changes: the state of extensions and the CommonJS modules they use, access lists, authors, or settings.  Views
+ * are also expired after a few minutes to pick up changes we can't observe, like group membership or user profile
+ * updates.
+ */
+public class UserPluginsCache implements ExtensionDataListener, DisposableBean
+{
+    static final long MAX_AGE = 5 * 60 * 1000;
+
+    private final PluginEventManager pluginEventManager;
+    private final SpeakeasyData data;
+    private final ConcurrentMap<String, View> views = new ConcurrentHashMap<String, View>();
+    private final AtomicLong generation = new AtomicLong();
+
+    public UserPluginsCache(PluginEventManager pluginEventManager, SpeakeasyData data)
+    {
+        this.pluginEventManager = pluginEventManager;
+        this.data = data;
+        pluginEventManager.register(this);
+        data.addListener(this);
+    }
+
+    /**
+     * @return The generation to pass to {@link #put(String, long, List)} after building a view
+     */
+    public long getGeneration()
+    {
+        return generation.get();
+    }
+
+    /**
+     * @return A copy of the cached view for the user, or null if there is no current view
+     */
+    public List<RemotePlugin> get(String user)
+    {
+        View view = views.get(user);
+        if (view == null)
+        {
+            return null;
+        }
+        if (view.generation != generation.get() || System.currentTimeMillis() - view.created > MAX_AGE)
+        {
+            views.remove(user, view);
+            return null;
+        }
+        return new ArrayList<RemotePlugin>(view.plugins);
+    }
+
+    /**
+     * Stores a view, unless something has changed since the passed generation was retrieved
+     */
+    public void put(String user, long builtAtGeneration, List<RemotePlugin> plugins)
+    {
+        if (builtAtGeneration == generation.get())
+        {
+            views.put(user, new View(builtAtGeneration, plugins));
+        }
+    }
+
+    public void invalidateAll()
+    {
+        generation.incrementAndGet();
+        views.clear();
+    }
+
+    public void onExtensionChanged(String pluginKey)
+    {
+        invalidateAll();
+    }
+
+    public void onAllExtensionsChanged()
+    {
+        invalidateAll();
+    }
+
+    @PluginEventListener
+    public void onPluginEnabled(PluginEnabledEvent event)
+    {
+        invalidateIfAffected(event.getPlugin());
+    }
+
+    @PluginEventListener
+    public void onPluginDisabled(PluginDisabledEvent event)
+    {
+        invalidateIfAffected(event.getPlugin());
+    }
+
+    @PluginEventListener
+    public void onPluginModuleEnabled(PluginModuleEnabledEvent event)
+    {
+        invalidateIfAffected(event.getModule());
+    }
+
+    @PluginEventListener
+    public void onPluginModuleDisabled(PluginModuleDisabledEvent event)
+    {
+        invalidateIfAffected(event.getModule());
+    }
+
+    public void destroy() throws Exception
+    {
+        pluginEventManager.unregister(this);
+        data.removeListener(this);
+        views.clear();
+    }
+
+    private void invalidateIfAffected(Plugin plugin)
+    {
+        for (ModuleDescriptor descriptor : plugin.getModuleDescriptors())
+        {
+            if (isAffecting(descriptor))
+            {
+                invalidateAll();
+                return;
+            }
+        }
+    }
+
+    private void invalidateIfAffected(ModuleDescriptor descriptor)
+    {
+        if (isAffecting(descriptor))
+        {
+            invalidateAll();
+        }
+    }
+
+    /**
+     * @return True if the module makes up an extension or a CommonJS module extensions can depend on, as every plugin in
+     * the product fires events and most have nothing to do with what users see
+     */
+    private static boolean isAffecting(ModuleDescriptor descriptor)
+    {
+        return descriptor instanceof DescriptorGenerator || descriptor instanceof CommonJsModulesDescriptor;
+    }
+
+    private static class View
+    {
+        private final long generation;
+        private final long created;
+        private final List<RemotePlugin> plugins;
+
+        public View(long generation, List<RemotePlugin> plugins)
+        {
+            this.generation = generation;
+            this.created = System.currentTimeMillis();
+            this.plugins = Collections.unmodifiableList(new ArrayList<RemotePlugin>(plugins));
+        }
+    }
+}
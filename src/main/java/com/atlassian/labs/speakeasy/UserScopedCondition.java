@@ -1,41 +1,51 @@
 package com.atlassian.labs.speakeasy;
 
+import com.atlassian.labs.speakeasy.data.external.ExtensionAccessLookup;
+import com.atlassian.labs.speakeasy.usage.external.UsageRecorder;
 import com.atlassian.plugin.PluginParseException;
 import com.atlassian.plugin.web.Condition;
 import com.atlassian.sal.api.user.UserManager;
 import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceReference;
 
-import java.util.Collection;
-import java.util.Collections;
-import java.util.HashSet;
 import java.util.Map;
-import java.util.Set;
-
-import static java.util.Arrays.asList;
-import static java.util.Collections.emptySet;
 
 /**
  *
  */
 public class UserScopedCondition implements Condition
 {
-    private Set<String> users;
+    private String pluginKey;
     private final UserManager userManager;
+    private final ExtensionAccessLookup accessLookup;
+    private final UsageRecorder usageRecorder;
 
     public UserScopedCondition(BundleContext bundleContext)
     {
         this.userManager = (UserManager) bundleContext.getService(bundleContext.getServiceReference(UserManager.class.getName()));
+        ServiceReference accessRef = bundleContext.getServiceReference(ExtensionAccessLookup.class.getName());
+        if (accessRef == null)
+        {
+            throw new IllegalStateException("The Speakeasy extension access service isn't available");
+        }
+        this.accessLookup = (ExtensionAccessLookup) bundleContext.getService(accessRef);
+        ServiceReference usageRef = bundleContext.getServiceReference(UsageRecorder.class.getName());
+        this.usageRecorder = usageRef != null ? (UsageRecorder) bundleContext.getService(usageRef) : null;
     }
 
     public void init(Map<String, String> props) throws PluginParseException
     {
-        String userString = props.get("users");
-
-        users = new HashSet<String>((userString != null && userString.length() > 0) ? asList(userString.split("\\|")) : Collections.<String>emptySet());
+        pluginKey = props.get("pluginKey");
     }
 
     public boolean shouldDisplay(Map<String, Object> stringObjectMap)
     {
-        return users.contains(userManager.getRemoteUsername());
+        String user = userManager.getRemoteUsername();
+        boolean display = user != null && pluginKey != null && accessLookup.hasAccess(pluginKey, user);
+        if (display && usageRecorder != null)
+        {
+            usageRecorder.recordPageLoad(pluginKey);
+        }
+        return display;
     }
 }
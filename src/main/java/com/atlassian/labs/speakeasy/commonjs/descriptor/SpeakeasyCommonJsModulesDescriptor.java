@@ -8,7 +8,6 @@ import com.atlassian.plugin.PluginAccessor;
 import com.atlassian.plugin.hostcontainer.HostContainer;
 import org.osgi.framework.BundleContext;
 
-import java.util.List;
 
 import static com.atlassian.labs.speakeasy.DescriptorGeneratorManager.getStatefulKey;
 import static java.util.Collections.emptySet;
@@ -31,7 +30,7 @@ public class SpeakeasyCommonJsModulesDescriptor extends CommonJsModulesDescripto
         this.descriptorGeneratorManager = descriptorGeneratorManager;
     }
 
-    public Iterable<CommonJsModulesDescriptor> getDescriptorsToExposeForUsers(List<String> users, long state)
+    public Iterable<CommonJsModulesDescriptor> getDescriptorsToExpose(long state)
     {
         return emptySet();
     }
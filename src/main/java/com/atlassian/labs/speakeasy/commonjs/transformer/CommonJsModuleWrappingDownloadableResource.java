@@ -4,6 +4,7 @@ import com.atlassian.labs.speakeasy.commonjs.CommonJsModules;
 import com.atlassian.labs.speakeasy.commonjs.Module;
 import com.atlassian.labs.speakeasy.commonjs.descriptor.CommonJsModulesDescriptor;
 import com.atlassian.labs.speakeasy.commonjs.util.ModuleWrapper;
+import com.atlassian.labs.speakeasy.usage.external.UsageRecorder;
 import com.atlassian.plugin.servlet.DownloadException;
 import com.atlassian.plugin.servlet.DownloadableResource;
 import com.atlassian.plugin.webresource.transformer.AbstractTransformedDownloadableResource;
@@ -19,13 +20,15 @@ public class CommonJsModuleWrappingDownloadableResource extends AbstractTransfor
     private final String moduleName;
     private final String modulesKey;
     private final CommonJsModules commonJsModules;
+    private final UsageRecorder usageRecorder;
 
-    public CommonJsModuleWrappingDownloadableResource(DownloadableResource delegate, String moduleName, String modulesKey, CommonJsModulesDescriptor commonJsModulesDescriptor)
+    public CommonJsModuleWrappingDownloadableResource(DownloadableResource delegate, String moduleName, String modulesKey, CommonJsModulesDescriptor commonJsModulesDescriptor, UsageRecorder usageRecorder)
     {
         super(delegate);
         this.moduleName = moduleName;
         this.modulesKey = modulesKey;
         this.commonJsModules = commonJsModulesDescriptor.getModule();
+        this.usageRecorder = usageRecorder;
     }
 
     public void streamResource(OutputStream outputStream)
@@ -44,6 +47,7 @@ public class CommonJsModuleWrappingDownloadableResource extends AbstractTransfor
         )));
 
         out.flush();
+        usageRecorder.recordDownload(commonJsModules.getPluginKey());
     }
 
 //    private Iterable<Dependency> findRecursiveDependencies(String id)
@@ -1,6 +1,7 @@
 package com.atlassian.labs.speakeasy.commonjs.transformer;
 
 import com.atlassian.labs.speakeasy.commonjs.descriptor.CommonJsModulesDescriptor;
+import com.atlassian.labs.speakeasy.usage.external.UsageRecorder;
 import com.atlassian.plugin.PluginAccessor;
 import com.atlassian.plugin.elements.ResourceLocation;
 import com.atlassian.plugin.servlet.DownloadableResource;
@@ -13,10 +14,12 @@ import org.dom4j.Element;
 public class CommonJsModuleWrappingTransformer implements WebResourceTransformer
 {
     private final PluginAccessor pluginAccessor;
+    private final UsageRecorder usageRecorder;
 
-    public CommonJsModuleWrappingTransformer(PluginAccessor pluginAccessor)
+    public CommonJsModuleWrappingTransformer(PluginAccessor pluginAccessor, UsageRecorder usageRecorder)
     {
         this.pluginAccessor = pluginAccessor;
+        this.usageRecorder = usageRecorder;
     }
 
     public DownloadableResource transform(Element element, ResourceLocation resourceLocation, String extraPath, DownloadableResource downloadableResource)
@@ -29,7 +32,7 @@ public class CommonJsModuleWrappingTransformer implements WebResourceTransformer
 
         String modulesKey = element.getParent().getParent().attributeValue("key");
 
-        return new CommonJsModuleWrappingDownloadableResource(downloadableResource, moduleName, modulesKey, commonJsModulesDescriptor);
+        return new CommonJsModuleWrappingDownloadableResource(downloadableResource, moduleName, modulesKey, commonJsModulesDescriptor, usageRecorder);
     }
 
 }
@@ -0,0 +1,202 @@
+package com.atlassian.labs.speakeasy.data;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Stores the users with access to each extension as a base list plus a log of changes, so adding or removing a user
+ * only writes the change rather than the whole list.  Once the log grows long enough, {@link #compact(String)} folds it
+ * into the base.
+ * <p>
+ * The base is kept under the key the whole list always used, so lists saved by earlier versions are read as a base
+ * with an empty log.  Log entries are written before the size that makes them visible, so an interrupted write is
+ * simply ignored.  Writes to the same plugin are serialised, while different plugins are written in parallel.
+ */
+public class AccessListStore
+{
+    static final int COMPACT_THRESHOLD = 100;
+
+    private static final char ADD = '+';
+    private static final char REMOVE = '-';
+
+    private final SpeakeasyStorage storage;
+    private final PluginLocks locks;
+    private final int compactThreshold;
+
+    public AccessListStore(SpeakeasyStorage storage, PluginLocks locks)
+    {
+        this(storage, locks, COMPACT_THRESHOLD);
+    }
+
+    AccessListStore(SpeakeasyStorage storage, PluginLocks locks, int compactThreshold)
+    {
+        this.storage = storage;
+        this.locks = locks;
+        this.compactThreshold = compactThreshold;
+    }
+
+    /**
+     * @return The users with access to the plugin, in the order they were added
+     */
+    public Set<String> load(String pluginKey)
+    {
+        Lock lock = locks.get(pluginKey);
+        lock.lock();
+        try
+        {
+            return read(pluginKey);
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Records a user being given access.  The caller is expected to know the user didn't already have access.
+     */
+    public void add(String pluginKey, String user)
+    {
+        append(pluginKey, ADD + user);
+    }
+
+    /**
+     * Records a user losing access.  The caller is expected to know the user had access.
+     */
+    public void remove(String pluginKey, String user)
+    {
+        append(pluginKey, REMOVE + user);
+    }
+
+    /**
+     * Replaces all the users of the plugin, writing them as the new base
+     */
+    public void save(String pluginKey, Collection<String> users)
+    {
+        Lock lock = locks.get(pluginKey);
+        lock.lock();
+        try
+        {
+            compact(pluginKey, users);
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Folds the log of the plugin into its base, if the log has grown long enough
+     */
+    public void compact(String pluginKey)
+    {
+        Lock lock = locks.get(pluginKey);
+        lock.lock();
+        try
+        {
+            if (getLogSize(pluginKey) >= compactThreshold)
+            {
+                // the base then includes every logged change, so replaying the log after an interrupted compaction is harmless
+                compact(pluginKey, read(pluginKey));
+            }
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    private Set<String> read(String pluginKey)
+    {
+        Set<String> users = new LinkedHashSet<String>();
+        List<String> base = (List<String>) storage.get(createBaseKey(pluginKey));
+        if (base != null)
+        {
+            users.addAll(base);
+        }
+        int logSize = getLogSize(pluginKey);
+        for (int x = 0; x < logSize; x++)
+        {
+            String entry = (String) storage.get(createLogEntryKey(pluginKey, x));
+            if (entry != null && entry.length() > 1)
+            {
+                String user = entry.substring(1);
+                if (entry.charAt(0) == ADD)
+                {
+                    users.add(user);
+                }
+                else
+                {
+                    users.remove(user);
+                }
+            }
+        }
+        return users;
+    }
+
+    private void append(String pluginKey, String entry)
+    {
+        Lock lock = locks.get(pluginKey);
+        lock.lock();
+        try
+        {
+            int logSize = getLogSize(pluginKey);
+            storage.put(createLogEntryKey(pluginKey, logSize), entry);
+            storage.put(createLogSizeKey(pluginKey), String.valueOf(logSize + 1));
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    private void compact(String pluginKey, Collection<String> users)
+    {
+        int logSize = getLogSize(pluginKey);
+        storage.put(createBaseKey(pluginKey), new ArrayList<String>(new LinkedHashSet<String>(users)));
+        if (logSize > 0)
+        {
+            storage.remove(createLogSizeKey(pluginKey));
+            for (int x = 0; x < logSize; x++)
+            {
+                storage.remove(createLogEntryKey(pluginKey, x));
+            }
+        }
+    }
+
+    private int getLogSize(String pluginKey)
+    {
+        String value = (String) storage.get(createLogSizeKey(pluginKey));
+        if (value == null)
+        {
+            return 0;
+        }
+        try
+        {
+            return Integer.parseInt(value);
+        }
+        catch (NumberFormatException ex)
+        {
+            return 0;
+        }
+    }
+
+    private static String createBaseKey(String pluginKey)
+    {
+        return "speakeasy-" + pluginKey + "-users";
+    }
+
+    private static String createLogSizeKey(String pluginKey)
+    {
+        return "speakeasy-" + pluginKey + "-users-log";
+    }
+
+    private static String createLogEntryKey(String pluginKey, int index)
+    {
+        return "speakeasy-" + pluginKey + "-users-log-" + index;
+    }
+}
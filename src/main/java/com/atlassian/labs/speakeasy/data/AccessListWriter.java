@@ -0,0 +1,139 @@
+package com.atlassian.labs.speakeasy.data;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes changes to access lists straight away, so a change is never acknowledged before it is stored, but compacts
+ * their logs in the background.  The plugins changed within the window are collected, so each is compacted at most once
+ * per window rather than by the request that happened to fill its log.
+ */
+public class AccessListWriter
+{
+    /**
+     * System property for the window in milliseconds.  A window of zero or less compacts straight away.
+     */
+    public static final String WINDOW_PROPERTY = "speakeasy.access.window";
+    static final long DEFAULT_WINDOW = 250;
+
+    private final AccessListStore store;
+    private final long window;
+    private final ScheduledThreadPoolExecutor executor;
+    private final Set<String> changed = new HashSet<String>();
+    private static final Logger log = LoggerFactory.getLogger(AccessListWriter.class);
+
+    private final Runnable compactTask = new Runnable()
+    {
+        public void run()
+        {
+            compact();
+        }
+    };
+
+    public AccessListWriter(AccessListStore store, long window)
+    {
+        this.store = store;
+        this.window = window;
+        this.executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory()
+        {
+            private final ThreadFactory delegate = Executors.defaultThreadFactory();
+
+            public Thread newThread(Runnable r)
+            {
+                Thread thread = delegate.newThread(r);
+                thread.setName("speakeasy-access-compactor");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+    }
+
+    /**
+     * Records a user being given access.  The caller is expected to know the user didn't already have access.
+     */
+    public void add(String pluginKey, String user)
+    {
+        store.add(pluginKey, user);
+        changed(pluginKey);
+    }
+
+    /**
+     * Records a user losing access.  The caller is expected to know the user had access.
+     */
+    public void remove(String pluginKey, String user)
+    {
+        store.remove(pluginKey, user);
+        changed(pluginKey);
+    }
+
+    /**
+     * Replaces the users of the plugin, which leaves nothing to compact
+     */
+    public void save(String pluginKey, Collection<String> users)
+    {
+        store.save(pluginKey, users);
+    }
+
+    /**
+     * Compacts the logs of the plugins changed since the last compaction
+     */
+    public void compact()
+    {
+        Set<String> pluginKeys;
+        synchronized (this)
+        {
+            pluginKeys = new HashSet<String>(changed);
+            changed.clear();
+        }
+        for (String pluginKey : pluginKeys)
+        {
+            compact(pluginKey);
+        }
+    }
+
+    public void destroy()
+    {
+        executor.shutdown();
+        compact();
+    }
+
+    private void changed(String pluginKey)
+    {
+        if (window <= 0 || executor.isShutdown())
+        {
+            compact(pluginKey);
+            return;
+        }
+
+        synchronized (this)
+        {
+            if (changed.isEmpty())
+            {
+                executor.schedule(compactTask, window, TimeUnit.MILLISECONDS);
+            }
+            changed.add(pluginKey);
+        }
+    }
+
+    private void compact(String pluginKey)
+    {
+        try
+        {
+            store.compact(pluginKey);
+        }
+        catch (RuntimeException ex)
+        {
+            // every change is still in the log, so it is simply compacted after the next change
+            log.error("Unable to compact the users of '" + pluginKey + "'", ex);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.atlassian.labs.speakeasy.data;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * In-memory copy of the extension access lists, indexed both by plugin and by user.  Plugins are loaded into the index
+ * individually, as the underlying storage can't enumerate them, so lookups by user only cover loaded plugins.
+ */
+public class ExtensionAccessIndex
+{
+    private final Map<String, Set<String>> usersByPlugin = new HashMap<String, Set<String>>();
+    private final Map<String, Set<String>> pluginsByUser = new HashMap<String, Set<String>>();
+
+    public synchronized boolean isLoaded(String pluginKey)
+    {
+        return usersByPlugin.containsKey(pluginKey);
+    }
+
+    /**
+     * Loads the users of a plugin, unless the plugin has already been loaded or written
+     */
+    public synchronized void load(String pluginKey, Collection<String> users)
+    {
+        if (!isLoaded(pluginKey))
+        {
+            put(pluginKey, users);
+        }
+    }
+
+    /**
+     * Replaces the users of a plugin
+     */
+    public synchronized void put(String pluginKey, Collection<String> users)
+    {
+        Set<String> oldUsers = usersByPlugin.get(pluginKey);
+        if (oldUsers != null)
+        {
+            for (String user : oldUsers)
+            {
+                Set<String> plugins = pluginsByUser.get(user);
+                plugins.remove(pluginKey);
+                if (plugins.isEmpty())
+                {
+                    pluginsByUser.remove(user);
+                }
+            }
+        }
+        Set<String> newUsers = new LinkedHashSet<String>(users);
+        usersByPlugin.put(pluginKey, newUsers);
+        for (String user : newUsers)
+        {
+            Set<String> plugins = pluginsByUser.get(user);
+            if (plugins == null)
+            {
+                plugins = new HashSet<String>();
+                pluginsByUser.put(user, plugins);
+            }
+            plugins.add(pluginKey);
+        }
+    }
+
+    /**
+     * @return True if the user didn't already have access
+     */
+    public synchronized boolean add(String pluginKey, String user)
+    {
+        Set<String> users = usersByPlugin.get(pluginKey);
+        if (users == null)
+        {
+            users = new LinkedHashSet<String>();
+            usersByPlugin.put(pluginKey, users);
+        }
+        if (!users.add(user))
+        {
+            return false;
+        }
+        Set<String> plugins = pluginsByUser.get(user);
+        if (plugins == null)
+        {
+            plugins = new HashSet<String>();
+            pluginsByUser.put(user, plugins);
+        }
+        plugins.add(pluginKey);
+        return true;
+    }
+
+    /**
+     * @return True if the user had access
+     */
+    public synchronized boolean remove(String pluginKey, String user)
+    {
+        Set<String> users = usersByPlugin.get(pluginKey);
+        if (users == null || !users.remove(user))
+        {
+            return false;
+        }
+        Set<String> plugins = pluginsByUser.get(user);
+        plugins.remove(pluginKey);
+        if (plugins.isEmpty())
+        {
+            pluginsByUser.remove(user);
+        }
+        return true;
+    }
+
+    /**
+     * @return A copy of the users of the plugin, empty if the plugin hasn't been loaded
+     */
+    public synchronized List<String> getUsers(String pluginKey)
+    {
+        Set<String> users = usersByPlugin.get(pluginKey);
+        return users != null ? new ArrayList<String>(users) : new ArrayList<String>();
+    }
+
+    public synchronized int getUserCount(String pluginKey)
+    {
+        Set<String> users = usersByPlugin.get(pluginKey);
+        return users != null ? users.size() : 0;
+    }
+
+    public synchronized boolean hasAccess(String pluginKey, String user)
+    {
+        Set<String> users = usersByPlugin.get(pluginKey);
+        return users != null && users.contains(user);
+    }
+
+    /**
+     * @return A copy of the keys of the loaded plugins the user has access to
+     */
+    public synchronized Set<String> getPluginKeys(String user)
+    {
+        Set<String> plugins = pluginsByUser.get(user);
+        return plugins != null ? new HashSet<String>(plugins) : new HashSet<String>();
+    }
+}
@@ -0,0 +1,17 @@
+package com.atlassian.labs.speakeasy.data;
+
+/**
+ * Told when the stored author or users of extensions change, so whatever is built from them can be thrown away
+ */
+public interface ExtensionDataListener
+{
+    /**
+     * Called after the author or users of a single extension have changed
+     */
+    void onExtensionChanged(String pluginKey);
+
+    /**
+     * Called after the data of every extension has been replaced, such as by an import
+     */
+    void onAllExtensionsChanged();
+}
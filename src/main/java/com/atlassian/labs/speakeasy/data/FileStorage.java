@@ -0,0 +1,218 @@
+package com.atlassian.labs.speakeasy.data;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keeps data in memory, backed by files in a directory: a snapshot of every value plus a log of the changes made since.
+ * Each change appends a record to the log, and once the log holds more records than the snapshot would, the snapshot
+ * is rewritten and the log emptied.  On startup the log is replayed over the snapshot, ignoring a last log record cut
+ * short by a crash, and compacted straight away.  The snapshot is only used once complete, so a short snapshot, like a
+ * record of an unknown type, means the files are corrupt, and opening fails rather than compacting away what is left.
+ */
+public class FileStorage implements SpeakeasyStorage
+{
+    static final int MIN_COMPACT_RECORDS = 1000;
+
+    private static final byte PUT = 'P';
+    private static final byte REMOVE = 'R';
+
+    private final File snapshotFile;
+    private final File logFile;
+    private final Map<String, Object> values = new HashMap<String, Object>();
+    private DataOutputStream log;
+    private int logRecords;
+    private static final Logger logger = LoggerFactory.getLogger(FileStorage.class);
+
+    public FileStorage(File directory) throws IOException
+    {
+        if (!directory.exists() && !directory.mkdirs())
+        {
+            throw new IOException("Unable to create storage directory " + directory);
+        }
+        this.snapshotFile = new File(directory, "speakeasy.dat");
+        this.logFile = new File(directory, "speakeasy.log");
+        File newSnapshot = getNewSnapshotFile();
+        if (!snapshotFile.exists() && newSnapshot.exists() && !newSnapshot.renameTo(snapshotFile))
+        {
+            throw new IOException("Unable to restore " + snapshotFile);
+        }
+        replay(snapshotFile, false);
+        replay(logFile, true);
+        compact();
+    }
+
+    public synchronized Object get(String key)
+    {
+        return StorageValues.copy(values.get(key));
+    }
+
+    public synchronized void put(String key, Object value)
+    {
+        Object copy = StorageValues.copy(value);
+        append(PUT, key, copy);
+        values.put(key, copy);
+        compactIfNeeded();
+    }
+
+    public synchronized void remove(String key)
+    {
+        if (values.containsKey(key))
+        {
+            append(REMOVE, key, null);
+            values.remove(key);
+            compactIfNeeded();
+        }
+    }
+
+    public synchronized void close()
+    {
+        try
+        {
+            log.close();
+        }
+        catch (IOException ex)
+        {
+            logger.warn("Unable to close " + logFile, ex);
+        }
+    }
+
+    private void append(byte type, String key, Object value)
+    {
+        try
+        {
+            writeRecord(log, type, key, value);
+            log.flush();
+            logRecords++;
+        }
+        catch (IOException ex)
+        {
+            throw new RuntimeException("Unable to write '" + key + "' to " + logFile, ex);
+        }
+    }
+
+    private void compactIfNeeded()
+    {
+        if (logRecords >= MIN_COMPACT_RECORDS && logRecords > values.size())
+        {
+            try
+            {
+                compact();
+            }
+            catch (IOException ex)
+            {
+                // the log still holds every change, so compaction is simply tried again later
+                logger.warn("Unable to compact " + logFile, ex);
+            }
+        }
+    }
+
+    private void compact() throws IOException
+    {
+        File newSnapshot = getNewSnapshotFile();
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(newSnapshot)));
+        try
+        {
+            for (Map.Entry<String, Object> entry : values.entrySet())
+            {
+                writeRecord(out, PUT, entry.getKey(), entry.getValue());
+            }
+        }
+        finally
+        {
+            out.close();
+        }
+        // the old snapshot and log are kept until the new snapshot is complete, and a complete new snapshot is used on
+        // startup if the old one is gone, so a crash part way through loses nothing
+        if (snapshotFile.exists() && !snapshotFile.delete() || !newSnapshot.renameTo(snapshotFile))
+        {
+            throw new IOException("Unable to replace " + snapshotFile);
+        }
+        if (log != null)
+        {
+            log.close();
+        }
+        log = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(logFile, false)));
+        logRecords = 0;
+    }
+
+    private File getNewSnapshotFile()
+    {
+        return new File(snapshotFile.getPath() + ".new");
+    }
+
+    /**
+     * @param appended Whether the file is appended to as changes are made, so its last record may be incomplete
+     */
+    private void replay(File file, boolean appended) throws IOException
+    {
+        if (!file.exists())
+        {
+            return;
+        }
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try
+        {
+            while (true)
+            {
+                byte type;
+                try
+                {
+                    type = in.readByte();
+                }
+                catch (EOFException ex)
+                {
+                    return;
+                }
+                if (type != PUT && type != REMOVE)
+                {
+                    // replaying past a corrupt record, then compacting, would lose or mangle data for good
+                    throw new IOException("Unknown type of record " + type + " in " + file);
+                }
+                String key = StorageValues.readString(in);
+                if (type == PUT)
+                {
+                    values.put(key, StorageValues.read(in));
+                }
+                else
+                {
+                    values.remove(key);
+                }
+            }
+        }
+        catch (EOFException ex)
+        {
+            if (!appended)
+            {
+                throw new IOException("Incomplete last record in " + file);
+            }
+            logger.warn("Ignoring the incomplete last record of " + file);
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+    private static void writeRecord(DataOutputStream out, byte type, String key, Object value) throws IOException
+    {
+        out.writeByte(type);
+        StorageValues.writeString(out, key);
+        if (type == PUT)
+        {
+            StorageValues.write(out, value);
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.atlassian.labs.speakeasy.data;
+
+import java.util.List;
+
+/**
+ * The extensions currently installed, so the data of each can be loaded and exported
+ */
+public interface InstalledExtensions
+{
+    /**
+     * @return The keys of all installed extensions, whether enabled or not
+     */
+    List<String> getPluginKeys();
+}
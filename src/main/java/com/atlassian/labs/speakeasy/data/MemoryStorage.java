@@ -0,0 +1,27 @@
+package com.atlassian.labs.speakeasy.data;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps data in memory only, for tests and for measuring Speakeasy without the storage of a product
+ */
+public class MemoryStorage implements SpeakeasyStorage
+{
+    private final Map<String, Object> values = new ConcurrentHashMap<String, Object>();
+
+    public Object get(String key)
+    {
+        return StorageValues.copy(values.get(key));
+    }
+
+    public void put(String key, Object value)
+    {
+        values.put(key, StorageValues.copy(value));
+    }
+
+    public void remove(String key)
+    {
+        values.remove(key);
+    }
+}
@@ -0,0 +1,38 @@
+package com.atlassian.labs.speakeasy.data;
+
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A fixed set of locks shared out between plugin keys, so changes to one plugin are serialised while changes to
+ * different plugins rarely wait on each other.  Locks are reentrant, but callers should only hold one at a time.
+ */
+public class PluginLocks
+{
+    static final int STRIPES = 64;
+
+    private final Lock[] locks;
+
+    public PluginLocks()
+    {
+        this(STRIPES);
+    }
+
+    PluginLocks(int stripes)
+    {
+        locks = new Lock[stripes];
+        for (int x = 0; x < stripes; x++)
+        {
+            locks[x] = new ReentrantLock();
+        }
+    }
+
+    public Lock get(String pluginKey)
+    {
+        int hash = pluginKey.hashCode();
+        // spread the bits, as plugin keys often only differ at the end
+        hash ^= (hash >>> 20) ^ (hash >>> 12);
+        hash ^= (hash >>> 7) ^ (hash >>> 4);
+        return locks[(hash & 0x7fffffff) % locks.length];
+    }
+}
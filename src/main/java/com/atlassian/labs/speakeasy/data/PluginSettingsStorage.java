@@ -0,0 +1,31 @@
+package com.atlassian.labs.speakeasy.data;
+
+import com.atlassian.sal.api.pluginsettings.PluginSettings;
+
+/**
+ * Keeps data in the global SAL plugin settings of the product
+ */
+public class PluginSettingsStorage implements SpeakeasyStorage
+{
+    private final PluginSettings pluginSettings;
+
+    public PluginSettingsStorage(PluginSettings pluginSettings)
+    {
+        this.pluginSettings = pluginSettings;
+    }
+
+    public Object get(String key)
+    {
+        return pluginSettings.get(key);
+    }
+
+    public void put(String key, Object value)
+    {
+        pluginSettings.put(key, value);
+    }
+
+    public void remove(String key)
+    {
+        pluginSettings.remove(key);
+    }
+}
@@ -1,28 +1,72 @@
 package com.atlassian.labs.speakeasy.data;
 
+import com.atlassian.labs.speakeasy.data.external.ExtensionAccessLookup;
 import com.atlassian.labs.speakeasy.model.Settings;
+import com.atlassian.labs.speakeasy.usage.external.UsageRecorder;
 import com.atlassian.labs.speakeasy.util.PomProperties;
-import com.atlassian.sal.api.pluginsettings.PluginSettings;
-import com.atlassian.sal.api.pluginsettings.PluginSettingsFactory;
+import org.springframework.beans.factory.DisposableBean;
 
-import java.util.ArrayList;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
- *
+ * Stores everything Speakeasy knows about extensions and users.  Changes to the users of an extension are made under
+ * a lock for that extension, so concurrent changes to one extension are never lost while different extensions can be
+ * changed in parallel.  Changes share an import lock that an import holds exclusively while it replaces everything, so
+ * none of them are lost in the middle of it.  The import lock is always taken before the lock of an extension.
  */
-public class SpeakeasyData
+public class SpeakeasyData implements ExtensionAccessLookup, DisposableBean
 {
-    private final PluginSettings pluginSettings;
+    private final SpeakeasyStorage storage;
     private final PomProperties pomProperties;
+    private final InstalledExtensions installedExtensions;
+    private final ExtensionAccessIndex accessIndex;
+    private final AccessListStore accessListStore;
+    private final AccessListWriter accessListWriter;
+    private final PluginLocks locks;
+    private final ReadWriteLock importLock = new ReentrantReadWriteLock();
+    private final UsageRecorder usageRecorder;
+    private final List<ExtensionDataListener> listeners = new CopyOnWriteArrayList<ExtensionDataListener>();
 
-    public SpeakeasyData(PluginSettingsFactory pluginSettingsFactory, PomProperties pomProperties)
+    public SpeakeasyData(SpeakeasyStorageFactory storageFactory, PomProperties pomProperties, InstalledExtensions installedExtensions, UsageRecorder usageRecorder)
     {
+        this.usageRecorder = usageRecorder;
         this.pomProperties = pomProperties;
-        this.pluginSettings = pluginSettingsFactory.createGlobalSettings();
+        this.installedExtensions = installedExtensions;
+        this.storage = storageFactory.getStorage();
+        this.accessIndex = new ExtensionAccessIndex();
+        this.locks = new PluginLocks();
+        this.accessListStore = new AccessListStore(storage, locks);
+        this.accessListWriter = new AccessListWriter(accessListStore, Long.getLong(AccessListWriter.WINDOW_PROPERTY, AccessListWriter.DEFAULT_WINDOW));
+        loadAllUsersLists();
     }
 
+    public void destroy() throws Exception
+    {
+        accessListWriter.destroy();
+    }
+
+    public void addListener(ExtensionDataListener listener)
+    {
+        listeners.add(listener);
+    }
+
+    public void removeListener(ExtensionDataListener listener)
+    {
+        listeners.remove(listener);
+    }
 
     public String getSpeakeasyVersion()
     {
@@ -30,34 +74,332 @@ public class SpeakeasyData
     }
     public void setPluginAuthor(String pluginKey, String username)
     {
-        pluginSettings.put(createAccessKey(pluginKey, "author"), username);
+        importLock.readLock().lock();
+        try
+        {
+            storage.put(createAccessKey(pluginKey, "author"), username);
+        }
+        finally
+        {
+            importLock.readLock().unlock();
+        }
+        fireExtensionChanged(pluginKey);
     }
 
     public void clearPluginAuthor(String pluginKey)
     {
-        pluginSettings.remove(createAccessKey(pluginKey, "author"));
+        importLock.readLock().lock();
+        try
+        {
+            storage.remove(createAccessKey(pluginKey, "author"));
+        }
+        finally
+        {
+            importLock.readLock().unlock();
+        }
+        fireExtensionChanged(pluginKey);
     }
 
     public String getPluginAuthor(String pluginKey)
     {
-        return (String) pluginSettings.get(createAccessKey(pluginKey, "author"));
+        return (String) storage.get(createAccessKey(pluginKey, "author"));
     }
 
+    /**
+     * @return A copy of the users with access to the plugin, read from memory once the plugin has been loaded
+     */
     public List<String> getUsersList(String pluginKey)
     {
-        String key = createAccessKey(pluginKey, "users");
-         List<String> accessList = (List<String>) pluginSettings.get(key);
-        if (accessList == null)
+        loadUsersList(pluginKey);
+        return accessIndex.getUsers(pluginKey);
+    }
+
+    public int getUserCount(String pluginKey)
+    {
+        loadUsersList(pluginKey);
+        return accessIndex.getUserCount(pluginKey);
+    }
+
+    public boolean hasAccess(String pluginKey, String user)
+    {
+        loadUsersList(pluginKey);
+        return accessIndex.hasAccess(pluginKey, user);
+    }
+
+    /**
+     * @return The keys of the Speakeasy plugins the user has access to
+     */
+    public Set<String> getPluginKeysForUser(String user)
+    {
+        loadAllUsersLists();
+        return accessIndex.getPluginKeys(user);
+    }
+
+    /**
+     * Replaces all the users with access to the plugin, writing them straight away
+     */
+    public void saveUsersList(String pluginKey, Collection<String> users)
+    {
+        Lock lock = locks.get(pluginKey);
+        importLock.readLock().lock();
+        lock.lock();
+        try
+        {
+            accessListWriter.save(pluginKey, users);
+            accessIndex.put(pluginKey, users);
+        }
+        finally
         {
-            accessList = new ArrayList<String>();
+            lock.unlock();
+            importLock.readLock().unlock();
         }
-        return accessList;
+        fireExtensionChanged(pluginKey);
     }
 
-    public void saveUsersList(String pluginKey, Collection<String> users)
+    /**
+     * Gives many users access at once, writing the whole list once rather than once per user
+     *
+     * @return The users that didn't already have access
+     */
+    public Set<String> addUsers(String pluginKey, Collection<String> users)
+    {
+        return changeUsers(pluginKey, users, true);
+    }
+
+    /**
+     * Takes access away from many users at once, writing the whole list once rather than once per user
+     *
+     * @return The users that had access
+     */
+    public Set<String> removeUsers(String pluginKey, Collection<String> users)
+    {
+        return changeUsers(pluginKey, users, false);
+    }
+
+    /**
+     * Gives the user access, writing only the change
+     *
+     * @return True if the user didn't already have access
+     */
+    public boolean addUser(String pluginKey, String user)
+    {
+        Lock lock = locks.get(pluginKey);
+        importLock.readLock().lock();
+        lock.lock();
+        try
+        {
+            loadUsersList(pluginKey);
+            if (accessIndex.hasAccess(pluginKey, user))
+            {
+                return false;
+            }
+            // written before the index changes, so a failed write leaves the user as they were
+            accessListWriter.add(pluginKey, user);
+            accessIndex.add(pluginKey, user);
+        }
+        finally
+        {
+            lock.unlock();
+            importLock.readLock().unlock();
+        }
+        usageRecorder.recordEnable(pluginKey, 1);
+        fireExtensionChanged(pluginKey);
+        return true;
+    }
+
+    /**
+     * Takes away the user's access, writing only the change
+     *
+     * @return True if the user had access
+     */
+    public boolean removeUser(String pluginKey, String user)
+    {
+        Lock lock = locks.get(pluginKey);
+        importLock.readLock().lock();
+        lock.lock();
+        try
+        {
+            loadUsersList(pluginKey);
+            if (!accessIndex.hasAccess(pluginKey, user))
+            {
+                return false;
+            }
+            // written before the index changes, so a failed write leaves the user as they were
+            accessListWriter.remove(pluginKey, user);
+            accessIndex.remove(pluginKey, user);
+        }
+        finally
+        {
+            lock.unlock();
+            importLock.readLock().unlock();
+        }
+        usageRecorder.recordDisable(pluginKey, 1);
+        fireExtensionChanged(pluginKey);
+        return true;
+    }
+
+    private Set<String> changeUsers(String pluginKey, Collection<String> users, boolean add)
+    {
+        Set<String> changed = new LinkedHashSet<String>();
+        Lock lock = locks.get(pluginKey);
+        importLock.readLock().lock();
+        lock.lock();
+        try
+        {
+            loadUsersList(pluginKey);
+            Set<String> newUsers = new LinkedHashSet<String>(accessIndex.getUsers(pluginKey));
+            for (String user : users)
+            {
+                if (add ? newUsers.add(user) : newUsers.remove(user))
+                {
+                    changed.add(user);
+                }
+            }
+            if (changed.isEmpty())
+            {
+                return changed;
+            }
+            // written before the index changes, so a failed write leaves the users as they were
+            accessListWriter.save(pluginKey, newUsers);
+            accessIndex.put(pluginKey, newUsers);
+        }
+        finally
+        {
+            lock.unlock();
+            importLock.readLock().unlock();
+        }
+        if (add)
+        {
+            usageRecorder.recordEnable(pluginKey, changed.size());
+        }
+        else
+        {
+            usageRecorder.recordDisable(pluginKey, changed.size());
+        }
+        fireExtensionChanged(pluginKey);
+        return changed;
+    }
+
+    /**
+     * Writes the settings and the author and users of every extension to the stream, one extension at a time
+     */
+    public void exportState(OutputStream out) throws IOException
     {
-        String key = createAccessKey(pluginKey, "users");
-        pluginSettings.put(key, users);
+        StateArchive.Writer writer = new StateArchive.Writer(out);
+        writer.writeSettings(getSettings());
+        for (String pluginKey : installedExtensions.getPluginKeys())
+        {
+            loadUsersList(pluginKey);
+            writer.writeExtension(pluginKey, getPluginAuthor(pluginKey), accessIndex.getUsers(pluginKey));
+        }
+        writer.finish();
+    }
+
+    /**
+     * Replaces the settings and the author and users of every extension with those in the stream, clearing extensions
+     * the stream doesn't mention.  The stream is read in full before anything is replaced, so a corrupt or truncated
+     * archive changes nothing, which holds every user of every extension in memory at once.  Each access list is
+     * written as a whole, while other changes wait until everything has been replaced.
+     *
+     * @return The keys of the imported extensions
+     */
+    public Set<String> importState(InputStream in) throws IOException
+    {
+        StateArchive.Reader reader = new StateArchive.Reader(in);
+        String settings = reader.readSettings();
+        Map<String, StateArchive.ExtensionState> extensions = new LinkedHashMap<String, StateArchive.ExtensionState>();
+        for (StateArchive.ExtensionState extension = reader.readExtension(); extension != null; extension = reader.readExtension())
+        {
+            extensions.put(extension.getPluginKey(), extension);
+        }
+        reader.finish();
+
+        importLock.writeLock().lock();
+        try
+        {
+            saveSettings(settings);
+            for (String pluginKey : installedExtensions.getPluginKeys())
+            {
+                if (!extensions.containsKey(pluginKey))
+                {
+                    importExtension(pluginKey, null, Collections.<String>emptyList());
+                }
+            }
+            for (StateArchive.ExtensionState extension : extensions.values())
+            {
+                importExtension(extension.getPluginKey(), extension.getAuthor(), extension.getUsers());
+            }
+        }
+        finally
+        {
+            importLock.writeLock().unlock();
+        }
+        fireAllExtensionsChanged();
+        return new LinkedHashSet<String>(extensions.keySet());
+    }
+
+    private void importExtension(String pluginKey, String author, List<String> users)
+    {
+        Lock lock = locks.get(pluginKey);
+        lock.lock();
+        try
+        {
+            if (author != null)
+            {
+                storage.put(createAccessKey(pluginKey, "author"), author);
+            }
+            else
+            {
+                storage.remove(createAccessKey(pluginKey, "author"));
+            }
+            accessListWriter.save(pluginKey, users);
+            accessIndex.put(pluginKey, users);
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    private void fireExtensionChanged(String pluginKey)
+    {
+        for (ExtensionDataListener listener : listeners)
+        {
+            listener.onExtensionChanged(pluginKey);
+        }
+    }
+
+    private void fireAllExtensionsChanged()
+    {
+        for (ExtensionDataListener listener : listeners)
+        {
+            listener.onAllExtensionsChanged();
+        }
+    }
+
+    private void loadAllUsersLists()
+    {
+        for (String pluginKey : installedExtensions.getPluginKeys())
+        {
+            loadUsersList(pluginKey);
+        }
+    }
+
+    private void loadUsersList(String pluginKey)
+    {
+        if (!accessIndex.isLoaded(pluginKey))
+        {
+            Lock lock = locks.get(pluginKey);
+            lock.lock();
+            try
+            {
+                accessIndex.load(pluginKey, accessListStore.load(pluginKey));
+            }
+            finally
+            {
+                lock.unlock();
+            }
+        }
     }
 
     private String createAccessKey(String pluginKey, String propertyName)
@@ -72,7 +414,7 @@ public class SpeakeasyData
 
     public String getSettings()
     {
-        String result = (String) pluginSettings.get(createAccessKey("settings"));
+        String result = (String) storage.get(createAccessKey("settings"));
         if (result == null)
         {
             result = saveSettings("{}");
@@ -82,7 +424,15 @@ public class SpeakeasyData
 
     public String saveSettings(String value)
     {
-        pluginSettings.put(createAccessKey("settings"), value);
+        importLock.readLock().lock();
+        try
+        {
+            storage.put(createAccessKey("settings"), value);
+        }
+        finally
+        {
+            importLock.readLock().unlock();
+        }
         return value;
     }
 }
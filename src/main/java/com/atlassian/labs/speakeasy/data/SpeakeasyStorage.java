@@ -0,0 +1,17 @@
+package com.atlassian.labs.speakeasy.data;
+
+/**
+ * Where Speakeasy keeps its data.  As with SAL plugin settings, values are strings, lists of strings or maps of strings
+ * to strings.
+ */
+public interface SpeakeasyStorage
+{
+    /**
+     * @return The value, or null if there is none
+     */
+    Object get(String key);
+
+    void put(String key, Object value);
+
+    void remove(String key);
+}
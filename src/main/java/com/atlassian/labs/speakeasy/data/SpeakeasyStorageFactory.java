@@ -0,0 +1,93 @@
+package com.atlassian.labs.speakeasy.data;
+
+import com.atlassian.sal.api.ApplicationProperties;
+import com.atlassian.sal.api.pluginsettings.PluginSettingsFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Picks the storage Speakeasy uses, shared by everything that stores data.  By default the plugin settings of the
+ * product are used.
+ */
+public class SpeakeasyStorageFactory implements DisposableBean
+{
+    /**
+     * System property for the storage to use: "pluginsettings", "memory" or "file"
+     */
+    public static final String STORAGE_PROPERTY = "speakeasy.storage";
+
+    /**
+     * System property for the directory of file storage, defaulting to "speakeasy" in the home directory of the product
+     */
+    public static final String DIRECTORY_PROPERTY = "speakeasy.storage.dir";
+
+    private final PluginSettingsFactory pluginSettingsFactory;
+    private final ApplicationProperties applicationProperties;
+    private SpeakeasyStorage storage;
+    private static final Logger log = LoggerFactory.getLogger(SpeakeasyStorageFactory.class);
+
+    public SpeakeasyStorageFactory(PluginSettingsFactory pluginSettingsFactory, ApplicationProperties applicationProperties)
+    {
+        this.pluginSettingsFactory = pluginSettingsFactory;
+        this.applicationProperties = applicationProperties;
+    }
+
+    public synchronized SpeakeasyStorage getStorage()
+    {
+        if (storage == null)
+        {
+            storage = createStorage(System.getProperty(STORAGE_PROPERTY, "pluginsettings"));
+        }
+        return storage;
+    }
+
+    public synchronized void destroy()
+    {
+        if (storage instanceof FileStorage)
+        {
+            ((FileStorage) storage).close();
+        }
+    }
+
+    private SpeakeasyStorage createStorage(String type)
+    {
+        if ("memory".equals(type))
+        {
+            log.warn("Speakeasy data is kept in memory only and will be lost on restart");
+            return new MemoryStorage();
+        }
+        else if ("file".equals(type))
+        {
+            File directory = getDirectory();
+            log.info("Speakeasy data is kept in " + directory);
+            try
+            {
+                return new FileStorage(directory);
+            }
+            catch (IOException ex)
+            {
+                throw new RuntimeException("Unable to open Speakeasy storage in " + directory, ex);
+            }
+        }
+        else if (!"pluginsettings".equals(type))
+        {
+            log.warn("Unknown Speakeasy storage '" + type + "', using plugin settings");
+        }
+        return new PluginSettingsStorage(pluginSettingsFactory.createGlobalSettings());
+    }
+
+    private File getDirectory()
+    {
+        String path = System.getProperty(DIRECTORY_PROPERTY);
+        if (path != null)
+        {
+            return new File(path);
+        }
+        File home = applicationProperties.getHomeDirectory();
+        return new File(home != null ? home : new File(System.getProperty("java.io.tmpdir")), "speakeasy");
+    }
+}
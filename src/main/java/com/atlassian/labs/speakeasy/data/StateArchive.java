@@ -0,0 +1,161 @@
+package com.atlassian.labs.speakeasy.data;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The format of exported Speakeasy state: a gzipped stream holding the settings followed by a record per extension, so
+ * neither writing nor reading needs the whole state in memory.
+ */
+class StateArchive
+{
+    private static final String MAGIC = "speakeasy-state";
+    private static final int VERSION = 1;
+    private static final byte EXTENSION = 'E';
+    private static final byte END = '.';
+
+    private StateArchive()
+    {
+    }
+
+    static class Writer
+    {
+        private final GZIPOutputStream gzip;
+        private final DataOutputStream out;
+
+        public Writer(OutputStream out) throws IOException
+        {
+            this.gzip = new GZIPOutputStream(out);
+            this.out = new DataOutputStream(gzip);
+            this.out.writeUTF(MAGIC);
+            this.out.writeInt(VERSION);
+        }
+
+        /**
+         * Writes the settings, which must come before any extension
+         */
+        public void writeSettings(String settings) throws IOException
+        {
+            StorageValues.writeString(out, settings);
+        }
+
+        public void writeExtension(String pluginKey, String author, Collection<String> users) throws IOException
+        {
+            out.writeByte(EXTENSION);
+            StorageValues.writeString(out, pluginKey);
+            StorageValues.writeString(out, author);
+            out.writeInt(users.size());
+            for (String user : users)
+            {
+                StorageValues.writeString(out, user);
+            }
+        }
+
+        /**
+         * Ends the archive, leaving the underlying stream open
+         */
+        public void finish() throws IOException
+        {
+            out.writeByte(END);
+            out.flush();
+            gzip.finish();
+        }
+    }
+
+    static class Reader
+    {
+        private final DataInputStream in;
+
+        public Reader(InputStream in) throws IOException
+        {
+            this.in = new DataInputStream(new GZIPInputStream(in));
+            if (!MAGIC.equals(this.in.readUTF()))
+            {
+                throw new IOException("Not a Speakeasy state archive");
+            }
+            int version = this.in.readInt();
+            if (version != VERSION)
+            {
+                throw new IOException("Unsupported Speakeasy state archive version: " + version);
+            }
+        }
+
+        public String readSettings() throws IOException
+        {
+            return StorageValues.readString(in);
+        }
+
+        /**
+         * @return The next extension, or null if there are no more
+         */
+        public ExtensionState readExtension() throws IOException
+        {
+            byte type = in.readByte();
+            if (type == END)
+            {
+                return null;
+            }
+            if (type != EXTENSION)
+            {
+                throw new IOException("Corrupt Speakeasy state archive");
+            }
+            String pluginKey = StorageValues.readString(in);
+            String author = StorageValues.readString(in);
+            int count = in.readInt();
+            List<String> users = new ArrayList<String>(count);
+            for (int x = 0; x < count; x++)
+            {
+                users.add(StorageValues.readString(in));
+            }
+            return new ExtensionState(pluginKey, author, users);
+        }
+
+        /**
+         * Checks nothing follows the end of the archive, which also has gzip verify the checksum of the whole archive
+         */
+        public void finish() throws IOException
+        {
+            if (in.read() != -1)
+            {
+                throw new IOException("Corrupt Speakeasy state archive");
+            }
+        }
+    }
+
+    static class ExtensionState
+    {
+        private final String pluginKey;
+        private final String author;
+        private final List<String> users;
+
+        public ExtensionState(String pluginKey, String author, List<String> users)
+        {
+            this.pluginKey = pluginKey;
+            this.author = author;
+            this.users = users;
+        }
+
+        public String getPluginKey()
+        {
+            return pluginKey;
+        }
+
+        public String getAuthor()
+        {
+            return author;
+        }
+
+        public List<String> getUsers()
+        {
+            return users;
+        }
+    }
+}
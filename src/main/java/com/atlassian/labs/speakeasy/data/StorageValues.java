@@ -0,0 +1,128 @@
+package com.atlassian.labs.speakeasy.data;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Copies, writes and reads the values kept in storage: strings, lists of strings and maps of strings to strings
+ */
+class StorageValues
+{
+    private static final byte STRING = 'S';
+    private static final byte LIST = 'L';
+    private static final byte MAP = 'M';
+
+    private StorageValues()
+    {
+    }
+
+    /**
+     * @return A copy of the value, so changes to one don't show in the other
+     */
+    static Object copy(Object value)
+    {
+        if (value instanceof List)
+        {
+            return new ArrayList<String>((List<String>) value);
+        }
+        else if (value instanceof Map)
+        {
+            return new HashMap<String, String>((Map<String, String>) value);
+        }
+        return value;
+    }
+
+    static void write(DataOutputStream out, Object value) throws IOException
+    {
+        if (value instanceof String)
+        {
+            out.writeByte(STRING);
+            writeString(out, (String) value);
+        }
+        else if (value instanceof List)
+        {
+            List<String> list = (List<String>) value;
+            out.writeByte(LIST);
+            out.writeInt(list.size());
+            for (String item : list)
+            {
+                writeString(out, item);
+            }
+        }
+        else if (value instanceof Map)
+        {
+            Map<String, String> map = (Map<String, String>) value;
+            out.writeByte(MAP);
+            out.writeInt(map.size());
+            for (Map.Entry<String, String> entry : map.entrySet())
+            {
+                writeString(out, entry.getKey());
+                writeString(out, entry.getValue());
+            }
+        }
+        else
+        {
+            throw new IllegalArgumentException("Unable to store value of type " + (value != null ? value.getClass().getName() : null));
+        }
+    }
+
+    static Object read(DataInputStream in) throws IOException
+    {
+        byte type = in.readByte();
+        if (type == STRING)
+        {
+            return readString(in);
+        }
+        else if (type == LIST)
+        {
+            int size = in.readInt();
+            List<String> list = new ArrayList<String>(size);
+            for (int x = 0; x < size; x++)
+            {
+                list.add(readString(in));
+            }
+            return list;
+        }
+        else if (type == MAP)
+        {
+            int size = in.readInt();
+            Map<String, String> map = new HashMap<String, String>();
+            for (int x = 0; x < size; x++)
+            {
+                map.put(readString(in), readString(in));
+            }
+            return map;
+        }
+        throw new IOException("Unknown type of stored value: " + type);
+    }
+
+    static void writeString(DataOutputStream out, String value) throws IOException
+    {
+        // unlike writeUTF, neither limited to 64k nor unable to tell null from empty
+        if (value == null)
+        {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes("UTF-8");
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(DataInputStream in) throws IOException
+    {
+        int length = in.readInt();
+        if (length < 0)
+        {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, "UTF-8");
+    }
+}
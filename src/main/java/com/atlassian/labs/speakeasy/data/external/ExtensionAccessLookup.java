@@ -0,0 +1,10 @@
+package com.atlassian.labs.speakeasy.data.external;
+
+/**
+ * Answers whether a user has enabled an extension, from the live access lists.  Exported so the conditions of
+ * generated descriptors, which run in the extension's bundle, see changes without the descriptors being regenerated.
+ */
+public interface ExtensionAccessLookup
+{
+    boolean hasAccess(String pluginKey, String user);
+}
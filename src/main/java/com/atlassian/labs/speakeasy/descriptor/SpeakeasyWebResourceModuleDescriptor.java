@@ -23,7 +23,6 @@ import java.io.IOException;
 import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.List;
 
 import static com.atlassian.labs.speakeasy.DescriptorGeneratorManager.getStatefulKey;
 
@@ -88,7 +87,7 @@ public class SpeakeasyWebResourceModuleDescriptor extends AbstractModuleDescript
         descriptorGeneratorManager.unregisterGenerator(getPluginKey(), getKey());
     }
 
-    public Iterable<WebResourceModuleDescriptor> getDescriptorsToExposeForUsers(List<String> users, long state)
+    public Iterable<WebResourceModuleDescriptor> getDescriptorsToExpose(long state)
     {
         WebResourceModuleDescriptor descriptor = WebResourceUtil.instantiateDescriptor(hostContainer);
 
@@ -99,7 +98,7 @@ public class SpeakeasyWebResourceModuleDescriptor extends AbstractModuleDescript
         }
         userElement.addAttribute("key", getStatefulKey(userElement.attributeValue("key"), state));
 
-        WebResourceUtil.addUsersCondition(users, userElement);
+        WebResourceUtil.addAccessCondition(getPluginKey(), userElement);
 
         if (log.isDebugEnabled())
         {
@@ -66,7 +66,7 @@ public class SpeakeasyWebItemModuleDescriptor extends AbstractModuleDescriptor<V
         descriptorGeneratorManager.unregisterGenerator(getPluginKey(), getKey());
     }
 
-    public Iterable<WebItemModuleDescriptor> getDescriptorsToExposeForUsers(List<String> users, long state)
+    public Iterable<WebItemModuleDescriptor> getDescriptorsToExpose(long state)
     {
         WebItemModuleDescriptor descriptor;
         try
@@ -101,7 +101,7 @@ public class SpeakeasyWebItemModuleDescriptor extends AbstractModuleDescriptor<V
         Element userElement = (Element) originalElement.clone();
         userElement.addAttribute("key", getStatefulKey(userElement.attributeValue("key"), state));
 
-        WebResourceUtil.addUsersCondition(users, userElement);
+        WebResourceUtil.addAccessCondition(getPluginKey(), userElement);
         resolveLinkPaths(state, userElement);
 
         descriptor.init(new AbstractDelegatingPlugin(getPlugin())
@@ -5,6 +5,7 @@ import com.atlassian.labs.speakeasy.commonjs.descriptor.CommonJsModulesDescripto
 import com.atlassian.labs.speakeasy.data.SpeakeasyData;
 import com.atlassian.labs.speakeasy.install.convention.ZipPluginTypeHandler;
 import com.atlassian.labs.speakeasy.install.convention.ZipTransformer;
+import com.atlassian.labs.speakeasy.metrics.SpeakeasyMetrics;
 import com.atlassian.labs.speakeasy.product.ProductAccessor;
 import com.atlassian.plugin.*;
 import com.atlassian.plugin.descriptors.UnloadableModuleDescriptor;
@@ -33,17 +34,19 @@ public class PluginManager
     private final PluginAccessor pluginAccessor;
     private final SpeakeasyData data;
     private final ProductAccessor productAccessor;
+    private final SpeakeasyMetrics metrics;
     private static final Logger log = LoggerFactory.getLogger(PluginManager.class);
 
     private final Map<PluginType,PluginTypeHandler> typeHandlers;
 
 
-    public PluginManager(PluginController pluginController, PluginAccessor pluginAccessor, SpeakeasyData data, BundleContext bundleContext, TemplateRenderer templateRenderer, UserManager userManager, ProductAccessor productAccessor, ZipTransformer zipTransformer)
+    public PluginManager(PluginController pluginController, PluginAccessor pluginAccessor, SpeakeasyData data, BundleContext bundleContext, TemplateRenderer templateRenderer, UserManager userManager, ProductAccessor productAccessor, ZipTransformer zipTransformer, SpeakeasyMetrics metrics)
     {
         this.pluginController = pluginController;
         this.pluginAccessor = pluginAccessor;
         this.data = data;
         this.productAccessor = productAccessor;
+        this.metrics = metrics;
         this.typeHandlers = ImmutableMap.of(
             PluginType.JAR, new JarPluginTypeHandler(bundleContext, templateRenderer),
             PluginType.ZIP, new ZipPluginTypeHandler(bundleContext, zipTransformer, templateRenderer),
@@ -52,6 +55,22 @@ public class PluginManager
     }
 
     public String install(File pluginFile, String user) throws PluginOperationFailedException
+    {
+        long start = System.currentTimeMillis();
+        boolean installed = false;
+        try
+        {
+            String pluginKey = installFile(pluginFile, user);
+            installed = true;
+            return pluginKey;
+        }
+        finally
+        {
+            metrics.recordInstall(System.currentTimeMillis() - start, installed);
+        }
+    }
+
+    private String installFile(File pluginFile, String user) throws PluginOperationFailedException
     {
         PluginArtifact pluginArtifact = null;
         String pluginKey;
@@ -32,24 +32,22 @@ public class ConventionDescriptorGeneratorServiceFactory implements ServiceFacto
     private final HostContainer hostContainer;
     private final DescriptorGeneratorManager descriptorGeneratorManager;
     private final PluginEventManager pluginEventManager;
-    private final JsonToElementParser jsonToElementParser;
     private final WebResourceManager webResourceManager;
-    private final JsonManifestHandler jsonManifestHandler;
+    private final ConventionMetadataCache conventionMetadataCache;
     private final PluginController pluginController;
 
     //private final Set<String> trackedPlugins = new CopyOnWriteArraySet<String>();
 
-    public ConventionDescriptorGeneratorServiceFactory(final BundleContext bundleContext, final PluginAccessor pluginAccessor, HostContainer hostContainer, DescriptorGeneratorManager descriptorGeneratorManager, JsonToElementParser jsonToElementParser, WebResourceManager webResourceManager, PluginEventManager pluginEventManager, final PluginController pluginController, JsonManifestHandler jsonManifestHandler)
+    public ConventionDescriptorGeneratorServiceFactory(final BundleContext bundleContext, final PluginAccessor pluginAccessor, HostContainer hostContainer, DescriptorGeneratorManager descriptorGeneratorManager, WebResourceManager webResourceManager, PluginEventManager pluginEventManager, final PluginController pluginController, ConventionMetadataCache conventionMetadataCache)
     {
         this.bundleContext = bundleContext;
         this.pluginAccessor = pluginAccessor;
         this.hostContainer = hostContainer;
         this.descriptorGeneratorManager = descriptorGeneratorManager;
-        this.jsonToElementParser = jsonToElementParser;
         this.pluginEventManager = pluginEventManager;
         this.webResourceManager = webResourceManager;
         this.pluginController = pluginController;
-        this.jsonManifestHandler = jsonManifestHandler;
+        this.conventionMetadataCache = conventionMetadataCache;
     }
 
     public Object getService(Bundle bundle, ServiceRegistration registration)
@@ -60,7 +58,7 @@ public class ConventionDescriptorGeneratorServiceFactory implements ServiceFacto
 
         if (bundle.getEntry("atlassian-extension.json") != null)
         {
-            JsonManifest mf = jsonManifestHandler.read(plugin);
+            JsonManifest mf = conventionMetadataCache.getManifest(plugin, bundle);
             registerScreenshotWebResourceDescriptor(bundle, factory, plugin, mf.getScreenshot());
         }
 
@@ -108,7 +106,7 @@ public class ConventionDescriptorGeneratorServiceFactory implements ServiceFacto
 
         try
         {
-            for (Element element : jsonToElementParser.createWebItems(plugin.getResourceAsStream("ui/web-items.json")))
+            for (Element element : conventionMetadataCache.getWebItems(plugin, bundle))
             {
                 SpeakeasyWebItemModuleDescriptor descriptor = new SpeakeasyWebItemModuleDescriptor(bundleContext, descriptorGeneratorManager, webResourceManager);
                 descriptor.init(plugin, element);
@@ -0,0 +1,98 @@
+package com.atlassian.labs.speakeasy.install.convention;
+
+import com.atlassian.labs.speakeasy.model.JsonManifest;
+import com.atlassian.plugin.Plugin;
+import org.dom4j.Element;
+import org.osgi.framework.Bundle;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Caches the parsed atlassian-extension.json and ui/web-items.json of installed convention extensions, so each
+ * version of an extension is only parsed once.  Entries are keyed on the plugin key and the last modified time of
+ * its bundle.
+ */
+public class ConventionMetadataCache
+{
+    private static final String WEB_ITEMS_PATH = "ui/web-items.json";
+
+    private final JsonManifestHandler jsonManifestHandler;
+    private final JsonToElementParser jsonToElementParser;
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+
+    public ConventionMetadataCache(JsonManifestHandler jsonManifestHandler, JsonToElementParser jsonToElementParser)
+    {
+        this.jsonManifestHandler = jsonManifestHandler;
+        this.jsonToElementParser = jsonToElementParser;
+    }
+
+    /**
+     * @param bundle The bundle of the plugin, or null if it isn't known, in which case the manifest isn't cached
+     */
+    public JsonManifest getManifest(Plugin plugin, Bundle bundle)
+    {
+        if (bundle == null)
+        {
+            return jsonManifestHandler.read(plugin);
+        }
+        Entry entry = getEntry(plugin, bundle);
+        JsonManifest manifest = entry.manifest;
+        if (manifest == null)
+        {
+            manifest = jsonManifestHandler.read(plugin);
+            entry.manifest = manifest;
+        }
+        return manifest;
+    }
+
+    /**
+     * @return Copies of the web item elements, so callers are free to modify them
+     */
+    public List<Element> getWebItems(Plugin plugin, Bundle bundle)
+    {
+        Entry entry = getEntry(plugin, bundle);
+        List<Element> webItems = entry.webItems;
+        if (webItems == null)
+        {
+            webItems = jsonToElementParser.createWebItems(plugin.getResourceAsStream(WEB_ITEMS_PATH));
+            entry.webItems = webItems;
+        }
+        List<Element> copies = new ArrayList<Element>();
+        for (Element element : webItems)
+        {
+            copies.add(element.createCopy());
+        }
+        return copies;
+    }
+
+    public void evict(String pluginKey)
+    {
+        entries.remove(pluginKey);
+    }
+
+    private Entry getEntry(Plugin plugin, Bundle bundle)
+    {
+        Entry entry = entries.get(plugin.getKey());
+        if (entry == null || entry.lastModified != bundle.getLastModified())
+        {
+            entry = new Entry(bundle.getLastModified());
+            entries.put(plugin.getKey(), entry);
+        }
+        return entry;
+    }
+
+    private static class Entry
+    {
+        private final long lastModified;
+        private volatile JsonManifest manifest;
+        private volatile List<Element> webItems;
+
+        public Entry(long lastModified)
+        {
+            this.lastModified = lastModified;
+        }
+    }
+}
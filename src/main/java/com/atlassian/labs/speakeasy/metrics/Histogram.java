@@ -0,0 +1,75 @@
+package com.atlassian.labs.speakeasy.metrics;
+
+import com.atlassian.labs.speakeasy.model.TimerStatistics;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the most recent samples of a timing, in milliseconds, so percentiles follow what is happening now rather than
+ * everything since startup.  The count and maximum cover every sample.
+ */
+class Histogram
+{
+    static final int WINDOW = 1024;
+
+    private final String name;
+    private final long[] samples;
+    private long count;
+    private long max;
+
+    public Histogram(String name)
+    {
+        this(name, WINDOW);
+    }
+
+    Histogram(String name, int window)
+    {
+        this.name = name;
+        this.samples = new long[window];
+    }
+
+    public synchronized void record(long millis)
+    {
+        samples[(int) (count % samples.length)] = millis;
+        count++;
+        max = Math.max(max, millis);
+    }
+
+    public synchronized long getCount()
+    {
+        return count;
+    }
+
+    /**
+     * @param percentile The percentile, between 0 and 100
+     * @return The smallest sample in the window at least as large as that percentage of the samples, or 0 if there are
+     * none
+     */
+    public long getPercentile(int percentile)
+    {
+        long[] window;
+        synchronized (this)
+        {
+            window = Arrays.copyOf(samples, (int) Math.min(count, samples.length));
+        }
+        if (window.length == 0)
+        {
+            return 0;
+        }
+        Arrays.sort(window);
+        int index = (int) Math.ceil(percentile / 100.0 * window.length) - 1;
+        return window[Math.max(0, Math.min(window.length - 1, index))];
+    }
+
+    public TimerStatistics getStatistics()
+    {
+        long currentCount;
+        long currentMax;
+        synchronized (this)
+        {
+            currentCount = count;
+            currentMax = max;
+        }
+        return new TimerStatistics(name, currentCount, getPercentile(50), getPercentile(99), currentMax);
+    }
+}
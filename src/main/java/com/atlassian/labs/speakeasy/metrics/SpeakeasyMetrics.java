@@ -0,0 +1,192 @@
+package com.atlassian.labs.speakeasy.metrics;
+
+import com.atlassian.labs.speakeasy.model.MetricsReport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts and times the work of generating descriptors, waiting for the modules they create and installing extensions.
+ * The numbers are available over JMX and as a report.
+ */
+public class SpeakeasyMetrics implements SpeakeasyMetricsMBean, DisposableBean
+{
+    static final String OBJECT_NAME = "com.atlassian.labs.speakeasy:type=Metrics";
+
+    private final AtomicLong registrations = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong registeredServices = new AtomicLong();
+    private final AtomicLong installFailures = new AtomicLong();
+    private final Histogram generation = new Histogram("generation");
+    private final Histogram enableWait = new Histogram("enableWait");
+    private final Histogram disableWait = new Histogram("disableWait");
+    private final Histogram install = new Histogram("install");
+    private final MBeanServer mbeanServer;
+    private final ObjectName objectName;
+    private static final Logger log = LoggerFactory.getLogger(SpeakeasyMetrics.class);
+
+    public SpeakeasyMetrics()
+    {
+        this(ManagementFactory.getPlatformMBeanServer());
+    }
+
+    /**
+     * @param mbeanServer The server to register with, or null to not use JMX
+     */
+    SpeakeasyMetrics(MBeanServer mbeanServer)
+    {
+        this.mbeanServer = mbeanServer;
+        this.objectName = mbeanServer != null ? register(mbeanServer) : null;
+    }
+
+    public void destroy() throws Exception
+    {
+        if (objectName != null)
+        {
+            mbeanServer.unregisterMBean(objectName);
+        }
+    }
+
+    public void recordRegistration()
+    {
+        registrations.incrementAndGet();
+    }
+
+    public void recordFailure()
+    {
+        failures.incrementAndGet();
+    }
+
+    public void recordGeneration(long millis)
+    {
+        generation.record(millis);
+    }
+
+    public void recordEnableWait(long millis)
+    {
+        enableWait.record(millis);
+    }
+
+    public void recordDisableWait(long millis)
+    {
+        disableWait.record(millis);
+    }
+
+    /**
+     * @param delta The number of services registered, negative for services unregistered
+     */
+    public void servicesChanged(int delta)
+    {
+        registeredServices.addAndGet(delta);
+    }
+
+    public void recordInstall(long millis, boolean succeeded)
+    {
+        install.record(millis);
+        if (!succeeded)
+        {
+            installFailures.incrementAndGet();
+        }
+    }
+
+    public MetricsReport getReport()
+    {
+        MetricsReport report = new MetricsReport(registrations.get(), failures.get(), registeredServices.get(), installFailures.get());
+        report.getTimers().add(generation.getStatistics());
+        report.getTimers().add(enableWait.getStatistics());
+        report.getTimers().add(disableWait.getStatistics());
+        report.getTimers().add(install.getStatistics());
+        return report;
+    }
+
+    public long getRegistrations()
+    {
+        return registrations.get();
+    }
+
+    public long getFailures()
+    {
+        return failures.get();
+    }
+
+    public long getRegisteredServices()
+    {
+        return registeredServices.get();
+    }
+
+    public long getGenerationP50()
+    {
+        return generation.getPercentile(50);
+    }
+
+    public long getGenerationP99()
+    {
+        return generation.getPercentile(99);
+    }
+
+    public long getEnableWaitP50()
+    {
+        return enableWait.getPercentile(50);
+    }
+
+    public long getEnableWaitP99()
+    {
+        return enableWait.getPercentile(99);
+    }
+
+    public long getDisableWaitP50()
+    {
+        return disableWait.getPercentile(50);
+    }
+
+    public long getDisableWaitP99()
+    {
+        return disableWait.getPercentile(99);
+    }
+
+    public long getInstalls()
+    {
+        return install.getCount();
+    }
+
+    public long getInstallFailures()
+    {
+        return installFailures.get();
+    }
+
+    public long getInstallP50()
+    {
+        return install.getPercentile(50);
+    }
+
+    public long getInstallP99()
+    {
+        return install.getPercentile(99);
+    }
+
+    private ObjectName register(MBeanServer server)
+    {
+        try
+        {
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            // left behind if the plugin was stopped without being destroyed
+            if (server.isRegistered(name))
+            {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(this, name);
+            return name;
+        }
+        catch (JMException ex)
+        {
+            log.warn("Unable to register Speakeasy metrics with JMX", ex);
+            return null;
+        }
+    }
+}
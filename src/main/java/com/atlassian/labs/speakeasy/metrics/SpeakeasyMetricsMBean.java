@@ -0,0 +1,33 @@
+package com.atlassian.labs.speakeasy.metrics;
+
+/**
+ * The metrics as seen over JMX.  Times are in milliseconds.
+ */
+public interface SpeakeasyMetricsMBean
+{
+    long getRegistrations();
+
+    long getFailures();
+
+    long getRegisteredServices();
+
+    long getGenerationP50();
+
+    long getGenerationP99();
+
+    long getEnableWaitP50();
+
+    long getEnableWaitP99();
+
+    long getDisableWaitP50();
+
+    long getDisableWaitP99();
+
+    long getInstalls();
+
+    long getInstallFailures();
+
+    long getInstallP50();
+
+    long getInstallP99();
+}
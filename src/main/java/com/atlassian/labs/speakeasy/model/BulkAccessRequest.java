@@ -0,0 +1,49 @@
+package com.atlassian.labs.speakeasy.model;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlRootElement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Users, and groups of users, to enable or disable an extension for at once
+ */
+@XmlRootElement
+@XmlAccessorType(XmlAccessType.PROPERTY)
+public class BulkAccessRequest
+{
+    private boolean enabled;
+    private List<String> users = new ArrayList<String>();
+    private List<String> groups = new ArrayList<String>();
+
+    public boolean isEnabled()
+    {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled)
+    {
+        this.enabled = enabled;
+    }
+
+    public List<String> getUsers()
+    {
+        return users;
+    }
+
+    public void setUsers(List<String> users)
+    {
+        this.users = users != null ? users : new ArrayList<String>();
+    }
+
+    public List<String> getGroups()
+    {
+        return groups;
+    }
+
+    public void setGroups(List<String> groups)
+    {
+        this.groups = groups != null ? groups : new ArrayList<String>();
+    }
+}
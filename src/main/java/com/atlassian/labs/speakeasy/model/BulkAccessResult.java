@@ -0,0 +1,78 @@
+package com.atlassian.labs.speakeasy.model;
+
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * What happened to each user when enabling or disabling an extension for many users at once
+ */
+@XmlRootElement
+public class BulkAccessResult
+{
+    private String pluginKey;
+    private boolean enabled;
+    private final List<String> changed = new ArrayList<String>();
+    private final List<String> unchanged = new ArrayList<String>();
+    private final List<String> rejected = new ArrayList<String>();
+    private final List<String> rejectedGroups = new ArrayList<String>();
+
+    public BulkAccessResult()
+    {
+    }
+
+    public BulkAccessResult(String pluginKey, boolean enabled)
+    {
+        this.pluginKey = pluginKey;
+        this.enabled = enabled;
+    }
+
+    @XmlElement
+    public String getPluginKey()
+    {
+        return pluginKey;
+    }
+
+    @XmlElement
+    public boolean isEnabled()
+    {
+        return enabled;
+    }
+
+    /**
+     * @return The users whose access was changed
+     */
+    @XmlElement
+    public List<String> getChanged()
+    {
+        return changed;
+    }
+
+    /**
+     * @return The users that already had the requested access
+     */
+    @XmlElement
+    public List<String> getUnchanged()
+    {
+        return unchanged;
+    }
+
+    /**
+     * @return The users that don't exist or aren't allowed to use the extension
+     */
+    @XmlElement
+    public List<String> getRejected()
+    {
+        return rejected;
+    }
+
+    /**
+     * @return The groups that don't exist or whose members the product can't list
+     */
+    @XmlElement
+    public List<String> getRejectedGroups()
+    {
+        return rejectedGroups;
+    }
+}
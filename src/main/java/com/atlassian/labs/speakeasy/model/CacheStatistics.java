@@ -0,0 +1,52 @@
+package com.atlassian.labs.speakeasy.model;
+
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+
+/**
+ * The size and hit rate of one of the Speakeasy caches
+ */
+@XmlRootElement
+public class CacheStatistics
+{
+    private String name;
+    private int size;
+    private long hits;
+    private long misses;
+
+    public CacheStatistics()
+    {
+    }
+
+    public CacheStatistics(String name, int size, long hits, long misses)
+    {
+        this.name = name;
+        this.size = size;
+        this.hits = hits;
+        this.misses = misses;
+    }
+
+    @XmlElement
+    public String getName()
+    {
+        return name;
+    }
+
+    @XmlElement
+    public int getSize()
+    {
+        return size;
+    }
+
+    @XmlElement
+    public long getHits()
+    {
+        return hits;
+    }
+
+    @XmlElement
+    public long getMisses()
+    {
+        return misses;
+    }
+}
@@ -0,0 +1,60 @@
+package com.atlassian.labs.speakeasy.model;
+
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+
+/**
+ * How often an extension has been enabled, disabled, shown and downloaded
+ */
+@XmlRootElement
+public class ExtensionUsage
+{
+    private String key;
+    private long enables;
+    private long disables;
+    private long pageLoads;
+    private long downloads;
+
+    public ExtensionUsage()
+    {
+    }
+
+    public ExtensionUsage(String key, long enables, long disables, long pageLoads, long downloads)
+    {
+        this.key = key;
+        this.enables = enables;
+        this.disables = disables;
+        this.pageLoads = pageLoads;
+        this.downloads = downloads;
+    }
+
+    @XmlElement
+    public String getKey()
+    {
+        return key;
+    }
+
+    @XmlElement
+    public long getEnables()
+    {
+        return enables;
+    }
+
+    @XmlElement
+    public long getDisables()
+    {
+        return disables;
+    }
+
+    @XmlElement
+    public long getPageLoads()
+    {
+        return pageLoads;
+    }
+
+    @XmlElement
+    public long getDownloads()
+    {
+        return downloads;
+    }
+}
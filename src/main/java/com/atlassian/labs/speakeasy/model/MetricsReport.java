@@ -0,0 +1,61 @@
+package com.atlassian.labs.speakeasy.model;
+
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Where time goes when generating descriptors and installing extensions
+ */
+@XmlRootElement
+public class MetricsReport
+{
+    private long registrations;
+    private long failures;
+    private long registeredServices;
+    private long installFailures;
+    private final List<TimerStatistics> timers = new ArrayList<TimerStatistics>();
+
+    public MetricsReport()
+    {
+    }
+
+    public MetricsReport(long registrations, long failures, long registeredServices, long installFailures)
+    {
+        this.registrations = registrations;
+        this.failures = failures;
+        this.registeredServices = registeredServices;
+        this.installFailures = installFailures;
+    }
+
+    @XmlElement
+    public long getRegistrations()
+    {
+        return registrations;
+    }
+
+    @XmlElement
+    public long getFailures()
+    {
+        return failures;
+    }
+
+    @XmlElement
+    public long getRegisteredServices()
+    {
+        return registeredServices;
+    }
+
+    @XmlElement
+    public long getInstallFailures()
+    {
+        return installFailures;
+    }
+
+    @XmlElement
+    public List<TimerStatistics> getTimers()
+    {
+        return timers;
+    }
+}
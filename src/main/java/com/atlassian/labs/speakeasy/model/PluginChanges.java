@@ -0,0 +1,64 @@
+package com.atlassian.labs.speakeasy.model;
+
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * The extensions that have changed since a version of the change log, as seen by a user
+ */
+@XmlRootElement
+public class PluginChanges
+{
+    private long version;
+    private boolean reset;
+    private final List<RemotePlugin> plugins = new ArrayList<RemotePlugin>();
+    private final List<String> removed = new ArrayList<String>();
+
+    public PluginChanges()
+    {
+    }
+
+    public PluginChanges(long version, boolean reset, Collection<RemotePlugin> plugins, Collection<String> removed)
+    {
+        this.version = version;
+        this.reset = reset;
+        this.plugins.addAll(plugins);
+        this.removed.addAll(removed);
+    }
+
+    /**
+     * @return The version to ask for changes since next time
+     */
+    @XmlElement
+    public long getVersion()
+    {
+        return version;
+    }
+
+    /**
+     * @return True if the changes are no longer known and the whole list should be reloaded
+     */
+    @XmlElement
+    public boolean isReset()
+    {
+        return reset;
+    }
+
+    @XmlElement
+    public List<RemotePlugin> getPlugins()
+    {
+        return plugins;
+    }
+
+    /**
+     * @return The keys of extensions that have been uninstalled or are no longer visible
+     */
+    @XmlElement
+    public List<String> getRemoved()
+    {
+        return removed;
+    }
+}
@@ -0,0 +1,60 @@
+package com.atlassian.labs.speakeasy.model;
+
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+
+/**
+ * How long something took, in milliseconds, over its recent samples
+ */
+@XmlRootElement
+public class TimerStatistics
+{
+    private String name;
+    private long count;
+    private long p50;
+    private long p99;
+    private long max;
+
+    public TimerStatistics()
+    {
+    }
+
+    public TimerStatistics(String name, long count, long p50, long p99, long max)
+    {
+        this.name = name;
+        this.count = count;
+        this.p50 = p50;
+        this.p99 = p99;
+        this.max = max;
+    }
+
+    @XmlElement
+    public String getName()
+    {
+        return name;
+    }
+
+    @XmlElement
+    public long getCount()
+    {
+        return count;
+    }
+
+    @XmlElement
+    public long getP50()
+    {
+        return p50;
+    }
+
+    @XmlElement
+    public long getP99()
+    {
+        return p99;
+    }
+
+    @XmlElement
+    public long getMax()
+    {
+        return max;
+    }
+}
@@ -0,0 +1,21 @@
+package com.atlassian.labs.speakeasy.model;
+
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The usage of every installed extension
+ */
+@XmlRootElement
+public class UsageReport
+{
+    private final List<ExtensionUsage> extensions = new ArrayList<ExtensionUsage>();
+
+    @XmlElement
+    public List<ExtensionUsage> getExtensions()
+    {
+        return extensions;
+    }
+}
@@ -1,19 +1,18 @@
 package com.atlassian.labs.speakeasy.model;
 
+import com.google.common.base.Function;
 import com.google.common.collect.ArrayListMultimap;
-import com.google.common.collect.SortedSetMultimap;
-import com.google.common.collect.TreeMultimap;
 import org.apache.commons.collections.MultiMap;
 
 import javax.xml.bind.annotation.XmlElement;
 import javax.xml.bind.annotation.XmlRootElement;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.TreeSet;
 
 import static java.util.Arrays.asList;
 
@@ -25,6 +24,8 @@ public class UserPlugins
 {
     private List<String> updated = new ArrayList<String>();
     private final Collection<RemotePlugin> plugins = new ArrayList<RemotePlugin>();
+    private int total;
+    private String nextCursor;
 
     public UserPlugins()
     {
@@ -35,6 +36,16 @@ public class UserPlugins
         setPlugins(plugins);
     }
 
+    /**
+     * Creates a single page of a listing, keeping the plugins in the order given
+     */
+    public UserPlugins(List<RemotePlugin> page, int total, String nextCursor)
+    {
+        this.plugins.addAll(page);
+        this.total = total;
+        this.nextCursor = nextCursor;
+    }
+
     @XmlElement
     public Collection<RemotePlugin> getPlugins()
     {
@@ -44,29 +55,83 @@ public class UserPlugins
     public void setPlugins(Collection<RemotePlugin> plugins)
     {
         this.plugins.clear();
-        SortedSetMultimap<String,RemotePlugin> pluginTrees = TreeMultimap.create();
-        TreeSet<RemotePlugin> roots = new TreeSet<RemotePlugin>();
-        HashMap<String, RemotePlugin> rootsByKey = new HashMap<String,RemotePlugin>();
-        for (RemotePlugin plugin : plugins)
+        List<RemotePlugin> sorted = new ArrayList<RemotePlugin>(plugins);
+        Collections.sort(sorted);
+        this.plugins.addAll(groupForks(sorted, new Function<RemotePlugin, String>()
+        {
+            public String apply(RemotePlugin from)
+            {
+                return from.getKey();
+            }
+        }));
+        this.total = this.plugins.size();
+        this.nextCursor = null;
+    }
+
+    /**
+     * Moves each fork to just after the extension it was forked from, otherwise keeping the order given.  Forks of
+     * extensions that aren't in the list stay at the end.
+     *
+     * @param getKey Gets the plugin key of an entry
+     */
+    public static <T> List<T> groupForks(List<T> plugins, Function<? super T, String> getKey)
+    {
+        List<T> roots = new ArrayList<T>();
+        Map<String, List<T>> forksByParent = new HashMap<String, List<T>>();
+        for (T plugin : plugins)
         {
-            if (!plugin.isFork())
+            String parentKey = RemotePlugin.getForkedPluginKey(getKey.apply(plugin));
+            if (parentKey == null)
             {
                 roots.add(plugin);
-                rootsByKey.put(plugin.getKey(), plugin);
             }
             else
             {
-                pluginTrees.get(plugin.getForkedPluginKey()).add(plugin);
+                List<T> forks = forksByParent.get(parentKey);
+                if (forks == null)
+                {
+                    forks = new ArrayList<T>();
+                    forksByParent.put(parentKey, forks);
+                }
+                forks.add(plugin);
             }
         }
-        for (RemotePlugin root : roots)
+        List<T> grouped = new ArrayList<T>(plugins.size());
+        for (T root : roots)
         {
-            this.plugins.add(root);
-            this.plugins.addAll(pluginTrees.get(root.getKey()));
-            plugins.remove(root);
-            plugins.removeAll(pluginTrees.get(root.getKey()));
+            grouped.add(root);
+            List<T> forks = forksByParent.remove(getKey.apply(root));
+            if (forks != null)
+            {
+                grouped.addAll(forks);
+            }
         }
-        this.plugins.addAll(plugins);
+        for (T plugin : plugins)
+        {
+            if (forksByParent.containsKey(RemotePlugin.getForkedPluginKey(getKey.apply(plugin))))
+            {
+                grouped.add(plugin);
+            }
+        }
+        return grouped;
+    }
+
+    /**
+     * @return The number of plugins across all pages
+     */
+    @XmlElement
+    public int getTotal()
+    {
+        return total;
+    }
+
+    /**
+     * @return The cursor to request the next page with, or null if this is the last page
+     */
+    @XmlElement
+    public String getNextCursor()
+    {
+        return nextCursor;
     }
 
     public void setUpdated(Collection<String> pluginKeys)
@@ -0,0 +1,51 @@
+package com.atlassian.labs.speakeasy.notification;
+
+import java.util.Map;
+
+/**
+ * An email to an extension author.  Only the identifiers needed to describe the event are captured on the request that
+ * triggered it, and the template context is created from them when the notification is sent, on the notification
+ * thread, so expensive lookups don't hold up the request.  That thread has no request or logged in user, so the
+ * context must be looked up for the users named in the notification rather than the current user.
+ */
+public abstract class Notification
+{
+    private final String recipient;
+    private final String type;
+
+    /**
+     * @param recipient The username to send the notification to
+     * @param type The notification type, used to find the templates "email/[type]-subject.vm" and
+     * "email/[type]-body.vm" and to tell the entries in a digest apart
+     */
+    protected Notification(String recipient, String type)
+    {
+        this.recipient = recipient;
+        this.type = type;
+    }
+
+    public String getRecipient()
+    {
+        return recipient;
+    }
+
+    public String getType()
+    {
+        return type;
+    }
+
+    public String getSubjectTemplate()
+    {
+        return "email/" + type + "-subject.vm";
+    }
+
+    public String getBodyTemplate()
+    {
+        return "email/" + type + "-body.vm";
+    }
+
+    /**
+     * @return The template context, or null if the notification is no longer worth sending
+     */
+    public abstract Map<String, Object> createContext() throws Exception;
+}
@@ -0,0 +1,239 @@
+package com.atlassian.labs.speakeasy.notification;
+
+import com.atlassian.labs.speakeasy.product.ProductAccessor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends notifications on a single background thread.  The first notification to a recipient goes out straight away,
+ * but any more notifications to that recipient within the digest window are held and sent together as one digest
+ * email when the window closes.  The number of queued notifications is bounded, and notifications beyond the bound
+ * are dropped.
+ */
+public class NotificationQueue implements DisposableBean
+{
+    /**
+     * System property for the digest window in milliseconds.  A window of zero or less sends every notification on its
+     * own.
+     */
+    public static final String WINDOW_PROPERTY = "speakeasy.notification.window";
+    static final long DEFAULT_WINDOW = 5 * 60 * 1000;
+    static final int MAX_QUEUED = 1000;
+
+    private final ProductAccessor productAccessor;
+    private final long window;
+    private final ScheduledThreadPoolExecutor executor;
+    private final AtomicInteger queued = new AtomicInteger();
+    private final Map<String, List<Notification>> batches = new HashMap<String, List<Notification>>();
+    private final Map<String, Long> lastSent = new HashMap<String, Long>();
+    private static final Logger log = LoggerFactory.getLogger(NotificationQueue.class);
+
+    public NotificationQueue(ProductAccessor productAccessor)
+    {
+        this(productAccessor, Long.getLong(WINDOW_PROPERTY, DEFAULT_WINDOW));
+    }
+
+    NotificationQueue(ProductAccessor productAccessor, long window)
+    {
+        this.productAccessor = productAccessor;
+        this.window = window;
+        this.executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory()
+        {
+            private final ThreadFactory delegate = Executors.defaultThreadFactory();
+
+            public Thread newThread(Runnable r)
+            {
+                Thread thread = delegate.newThread(r);
+                thread.setName("speakeasy-notifications");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+    }
+
+    public void submit(Notification notification)
+    {
+        if (queued.incrementAndGet() > MAX_QUEUED)
+        {
+            queued.decrementAndGet();
+            log.warn("Too many queued notifications, dropping '{}' notification to '{}'", notification.getType(), notification.getRecipient());
+            return;
+        }
+
+        final String recipient = notification.getRecipient();
+        synchronized (this)
+        {
+            if (executor.isShutdown())
+            {
+                queued.decrementAndGet();
+                return;
+            }
+            List<Notification> batch = batches.get(recipient);
+            if (batch != null)
+            {
+                batch.add(notification);
+                return;
+            }
+
+            batch = new ArrayList<Notification>();
+            batch.add(notification);
+            batches.put(recipient, batch);
+
+            long delay = 0;
+            Long sent = lastSent.get(recipient);
+            if (window > 0 && sent != null)
+            {
+                delay = Math.max(0, sent + window - System.currentTimeMillis());
+            }
+            executor.schedule(new Runnable()
+            {
+                public void run()
+                {
+                    flush(recipient);
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public void destroy() throws Exception
+    {
+        List<List<Notification>> remaining;
+        synchronized (this)
+        {
+            executor.shutdown();
+            remaining = new ArrayList<List<Notification>>(batches.values());
+            batches.clear();
+        }
+        executor.awaitTermination(30, TimeUnit.SECONDS);
+        for (List<Notification> batch : remaining)
+        {
+            send(batch);
+        }
+    }
+
+    private void flush(String recipient)
+    {
+        List<Notification> batch;
+        synchronized (this)
+        {
+            batch = batches.remove(recipient);
+            if (batch == null)
+            {
+                return;
+            }
+            if (window > 0)
+            {
+                long now = System.currentTimeMillis();
+                // only recipients sent to within the window hold up later notifications, so older entries can go
+                for (Iterator<Long> i = lastSent.values().iterator(); i.hasNext(); )
+                {
+                    if (now - i.next() >= window)
+                    {
+                        i.remove();
+                    }
+                }
+                lastSent.put(recipient, now);
+            }
+        }
+        send(batch);
+    }
+
+    /**
+     * @return The number of recipients whose last notification is still tracked
+     */
+    synchronized int getTrackedRecipientCount()
+    {
+        return lastSent.size();
+    }
+
+    private void send(List<Notification> batch)
+    {
+        try
+        {
+            if (window > 0 && batch.size() > 1)
+            {
+                sendDigest(batch);
+            }
+            else
+            {
+                for (Notification notification : batch)
+                {
+                    sendSingle(notification);
+                }
+            }
+        }
+        finally
+        {
+            queued.addAndGet(-batch.size());
+        }
+    }
+
+    private void sendSingle(Notification notification)
+    {
+        Map<String, Object> context = createContext(notification);
+        if (context != null)
+        {
+            sendEmail(notification.getRecipient(), notification.getSubjectTemplate(), notification.getBodyTemplate(), context);
+        }
+    }
+
+    private void sendDigest(List<Notification> batch)
+    {
+        List<Map<String, Object>> entries = new ArrayList<Map<String, Object>>();
+        for (Notification notification : batch)
+        {
+            Map<String, Object> context = createContext(notification);
+            if (context != null)
+            {
+                context.put("type", notification.getType());
+                entries.add(context);
+            }
+        }
+        if (!entries.isEmpty())
+        {
+            Map<String, Object> context = new HashMap<String, Object>();
+            context.put("entries", entries);
+            context.put("total", entries.size());
+            sendEmail(batch.get(0).getRecipient(), "email/digest-subject.vm", "email/digest-body.vm", context);
+        }
+    }
+
+    private void sendEmail(String recipient, String subjectTemplate, String bodyTemplate, Map<String, Object> context)
+    {
+        try
+        {
+            productAccessor.sendEmail(recipient, subjectTemplate, bodyTemplate, context);
+        }
+        catch (RuntimeException ex)
+        {
+            log.error("Unable to send notification to '" + recipient + "'", ex);
+        }
+    }
+
+    private Map<String, Object> createContext(Notification notification)
+    {
+        try
+        {
+            Map<String, Object> context = notification.createContext();
+            return context != null ? new HashMap<String, Object>(context) : null;
+        }
+        catch (Exception ex)
+        {
+            log.error("Unable to create '" + notification.getType() + "' notification to '" + notification.getRecipient() + "'", ex);
+            return null;
+        }
+    }
+}
@@ -1,11 +1,14 @@
 package com.atlassian.labs.speakeasy.product;
 
+import com.atlassian.core.user.GroupUtils;
 import com.atlassian.core.user.UserUtils;
 import com.atlassian.labs.speakeasy.util.PomProperties;
 import com.opensymphony.user.EntityNotFoundException;
+import com.opensymphony.user.Group;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Collection;
 import java.util.Map;
 
 
@@ -52,4 +55,14 @@ public class BambooProductAccessor implements ProductAccessor {
     {
         return "/plugins/servlet/speakeasy/user";
     }
+
+    public Collection<String> getGroupMembers(String groupName)
+    {
+        Group group = GroupUtils.getGroup(groupName);
+        if (group == null)
+        {
+            return null;
+        }
+        return (Collection<String>) group.getUsers();
+    }
 }
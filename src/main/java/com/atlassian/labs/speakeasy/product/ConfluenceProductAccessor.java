@@ -8,14 +8,21 @@ import com.atlassian.mail.MailFactory;
 import com.atlassian.mail.server.SMTPMailServer;
 import com.atlassian.templaterenderer.TemplateRenderer;
 import com.atlassian.user.EntityException;
+import com.atlassian.user.Group;
+import com.atlassian.user.GroupManager;
 import com.atlassian.user.User;
 import com.atlassian.user.UserManager;
+import com.atlassian.user.search.page.Pager;
 import org.netbeans.lib.cvsclient.commandLine.command.log;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 
 import static com.google.common.collect.Maps.newHashMap;
@@ -28,12 +35,14 @@ public class ConfluenceProductAccessor implements ProductAccessor
     private final PomProperties pomProperties;
     private static final Logger log = LoggerFactory.getLogger(ConfluenceProductAccessor.class);
     private final UserManager userManager;
+    private final GroupManager groupManager;
     private final TemplateRenderer templateRenderer;
 
-    public ConfluenceProductAccessor(PomProperties pomProperties, UserManager userManager, TemplateRenderer templateRenderer)
+    public ConfluenceProductAccessor(PomProperties pomProperties, UserManager userManager, GroupManager groupManager, TemplateRenderer templateRenderer)
     {
         this.pomProperties = pomProperties;
         this.userManager = userManager;
+        this.groupManager = groupManager;
         this.templateRenderer = templateRenderer;
     }
 
@@ -102,6 +111,30 @@ public class ConfluenceProductAccessor implements ProductAccessor
         return "/plugins/servlet/speakeasy/user";
     }
 
+    public Collection<String> getGroupMembers(String groupName)
+    {
+        try
+        {
+            Group group = groupManager.getGroup(groupName);
+            if (group == null)
+            {
+                return null;
+            }
+            List<String> members = new ArrayList<String>();
+            Pager pager = groupManager.getMemberNames(group);
+            for (Iterator i = pager.iterator(); i.hasNext(); )
+            {
+                members.add((String) i.next());
+            }
+            return members;
+        }
+        catch (EntityException e)
+        {
+            log.error("Unable to look up members of group " + groupName, e);
+            return null;
+        }
+    }
+
     private String render(String templateName, Map<String,Object> context) throws IOException
     {
         StringWriter writer = new StringWriter();
@@ -13,6 +13,7 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.StringWriter;
+import java.util.Collection;
 import java.util.Map;
 
 public class FecruProductAccessor implements ProductAccessor {
@@ -86,6 +87,11 @@ public class FecruProductAccessor implements ProductAccessor {
         }
     }
 
+    public Collection<String> getGroupMembers(String groupName) {
+        // group membership isn't exposed to plugins
+        return null;
+    }
+
     private String render(String templateName, Map<String,Object> context) throws IOException {
         StringWriter writer = new StringWriter();
         templateRenderer.render(templateName, context, writer);
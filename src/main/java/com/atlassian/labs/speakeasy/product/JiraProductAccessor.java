@@ -1,5 +1,6 @@
 package com.atlassian.labs.speakeasy.product;
 
+import com.atlassian.core.user.GroupUtils;
 import com.atlassian.core.user.UserUtils;
 import com.atlassian.jira.ManagerFactory;
 import com.atlassian.jira.mail.Email;
@@ -7,12 +8,14 @@ import com.atlassian.labs.speakeasy.util.PomProperties;
 import com.atlassian.mail.queue.SingleMailQueueItem;
 import com.atlassian.templaterenderer.TemplateRenderer;
 import com.opensymphony.user.EntityNotFoundException;
+import com.opensymphony.user.Group;
 import com.opensymphony.user.User;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.StringWriter;
+import java.util.Collection;
 import java.util.Map;
 
 import static com.google.common.collect.Maps.newHashMap;
@@ -93,6 +96,16 @@ public class JiraProductAccessor implements ProductAccessor
         return "/secure/ViewProfile.jspa#selectedTab=com.atlassian.labs.speakeasy-plugin:speakeasy-plugins";
     }
 
+    public Collection<String> getGroupMembers(String groupName)
+    {
+        Group group = GroupUtils.getGroup(groupName);
+        if (group == null)
+        {
+            return null;
+        }
+        return (Collection<String>) group.getUsers();
+    }
+
     private String render(String templateName, Map<String,Object> context) throws IOException
     {
         StringWriter writer = new StringWriter();
@@ -1,5 +1,6 @@
 package com.atlassian.labs.speakeasy.product;
 
+import java.util.Collection;
 import java.util.Map;
 
 /**
@@ -18,4 +19,10 @@ public interface ProductAccessor
     void sendEmail(String toUsername, String subjectTemplate, String bodyTemplate, Map<String,Object> context);
 
     String getProfilePath();
+
+    /**
+     * @return The names of the users in the group, or null if the group doesn't exist or the product can't list its
+     * members
+     */
+    Collection<String> getGroupMembers(String groupName);
 }
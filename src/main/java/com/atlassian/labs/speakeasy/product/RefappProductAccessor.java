@@ -14,6 +14,7 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.StringWriter;
+import java.util.Collection;
 import java.util.Map;
 
 import static com.google.common.collect.Maps.newHashMap;
@@ -86,6 +87,12 @@ public class RefappProductAccessor implements ProductAccessor
         }
     }
 
+    public Collection<String> getGroupMembers(String groupName)
+    {
+        // SAL can't list the members of a group
+        return null;
+    }
+
     private String render(String templateName, Map<String,Object> context) throws IOException
     {
         StringWriter writer = new StringWriter();
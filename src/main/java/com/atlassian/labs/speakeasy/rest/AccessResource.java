@@ -0,0 +1,38 @@
+package com.atlassian.labs.speakeasy.rest;
+
+import com.atlassian.labs.speakeasy.SpeakeasyManager;
+import com.atlassian.labs.speakeasy.UnauthorizedAccessException;
+import com.atlassian.labs.speakeasy.model.BulkAccessRequest;
+import com.atlassian.sal.api.user.UserManager;
+
+import javax.ws.rs.Consumes;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.Response;
+
+/**
+ *
+ */
+@Path("/admin/access")
+public class AccessResource
+{
+    private final SpeakeasyManager speakeasyManager;
+    private final UserManager userManager;
+
+    public AccessResource(SpeakeasyManager speakeasyManager, UserManager userManager)
+    {
+        this.speakeasyManager = speakeasyManager;
+        this.userManager = userManager;
+    }
+
+    @POST
+    @Path("{pluginKey}")
+    @Consumes("application/json")
+    @Produces("application/json")
+    public Response setBulkAccess(@PathParam("pluginKey") String pluginKey, BulkAccessRequest request) throws UnauthorizedAccessException
+    {
+        return Response.ok(speakeasyManager.setBulkAccess(pluginKey, request, userManager.getRemoteUsername())).build();
+    }
+}
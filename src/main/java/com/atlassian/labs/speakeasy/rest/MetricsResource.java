@@ -0,0 +1,36 @@
+package com.atlassian.labs.speakeasy.rest;
+
+import com.atlassian.labs.speakeasy.SpeakeasyManager;
+import com.atlassian.labs.speakeasy.UnauthorizedAccessException;
+import com.atlassian.sal.api.user.UserManager;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.CacheControl;
+import javax.ws.rs.core.Response;
+
+/**
+ *
+ */
+@Path("/metrics")
+public class MetricsResource
+{
+    private final SpeakeasyManager speakeasyManager;
+    private final UserManager userManager;
+
+    public MetricsResource(SpeakeasyManager speakeasyManager, UserManager userManager)
+    {
+        this.speakeasyManager = speakeasyManager;
+        this.userManager = userManager;
+    }
+
+    @GET
+    @Produces("application/json")
+    public Response getMetrics() throws UnauthorizedAccessException
+    {
+        CacheControl cacheControl = new CacheControl();
+        cacheControl.setNoCache(true);
+        return Response.ok(speakeasyManager.getMetrics(userManager.getRemoteUsername())).cacheControl(cacheControl).build();
+    }
+}
@@ -0,0 +1,70 @@
+package com.atlassian.labs.speakeasy.rest;
+
+import com.atlassian.labs.speakeasy.SpeakeasyManager;
+import com.atlassian.labs.speakeasy.UnauthorizedAccessException;
+import com.atlassian.sal.api.user.UserManager;
+
+import javax.ws.rs.Consumes;
+import javax.ws.rs.GET;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.CacheControl;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Exports and imports the state of Speakeasy as a gzipped stream, for moving it between instances
+ */
+@Path("/admin/state")
+public class StateResource
+{
+    private final SpeakeasyManager speakeasyManager;
+    private final UserManager userManager;
+
+    public StateResource(SpeakeasyManager speakeasyManager, UserManager userManager)
+    {
+        this.speakeasyManager = speakeasyManager;
+        this.userManager = userManager;
+    }
+
+    @GET
+    @Produces("application/octet-stream")
+    public Response exportState() throws UnauthorizedAccessException
+    {
+        final String user = userManager.getRemoteUsername();
+        // checked up front, as once streaming starts the response can no longer be an error
+        if (!userManager.isAdmin(user))
+        {
+            throw new UnauthorizedAccessException(user, "Cannot access Speakeasy due to lack of permissions");
+        }
+        CacheControl cacheControl = new CacheControl();
+        cacheControl.setNoCache(true);
+        return Response.ok(new StreamingOutput()
+        {
+            public void write(OutputStream output) throws IOException, WebApplicationException
+            {
+                try
+                {
+                    speakeasyManager.exportState(output, user);
+                }
+                catch (UnauthorizedAccessException e)
+                {
+                    throw new WebApplicationException(e, Response.Status.FORBIDDEN);
+                }
+            }
+        }).header("Content-Disposition", "attachment; filename=speakeasy-state.gz").cacheControl(cacheControl).build();
+    }
+
+    @POST
+    @Consumes("application/octet-stream")
+    public Response importState(InputStream in) throws UnauthorizedAccessException, IOException
+    {
+        speakeasyManager.importState(in, userManager.getRemoteUsername());
+        return Response.noContent().build();
+    }
+}
@@ -1,5 +1,6 @@
 package com.atlassian.labs.speakeasy.rest;
 
+import com.atlassian.labs.speakeasy.PluginListQuery;
 import com.atlassian.labs.speakeasy.SpeakeasyManager;
 import com.atlassian.labs.speakeasy.UnauthorizedAccessException;
 import com.atlassian.labs.speakeasy.model.UserPlugins;
@@ -11,6 +12,7 @@ import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.Response;
 import java.util.List;
 
@@ -34,9 +36,58 @@ public class UserResource
     @GET
     @Path("")
     @Produces("application/json")
-    public Response getPlugins() throws UnauthorizedAccessException
+    public Response getPlugins(@QueryParam("limit") Integer limit,
+                               @QueryParam("cursor") String cursor,
+                               @QueryParam("enabled") Boolean enabled,
+                               @QueryParam("available") Boolean available,
+                               @QueryParam("author") String author,
+                               @QueryParam("fork") Boolean fork,
+                               @QueryParam("text") String text,
+                               @QueryParam("sort") String sort) throws UnauthorizedAccessException
     {
-        return Response.ok(speakeasyManager.getRemotePluginList(userManager.getRemoteUsername())).build();
+        String user = userManager.getRemoteUsername();
+        if (limit == null && cursor == null && enabled == null && available == null && author == null && fork == null
+                && text == null && sort == null)
+        {
+            return Response.ok(speakeasyManager.getRemotePluginList(user)).build();
+        }
+
+        PluginListQuery query;
+        try
+        {
+            query = new PluginListQuery()
+                    .limit(limit)
+                    .cursor(cursor)
+                    .enabled(enabled)
+                    .available(available)
+                    .author(author)
+                    .fork(fork)
+                    .text(text)
+                    .sort(sort);
+        }
+        catch (IllegalArgumentException ex)
+        {
+            return Response.status(Response.Status.BAD_REQUEST).entity(ex.getMessage()).build();
+        }
+        return Response.ok(speakeasyManager.getRemotePluginList(user, query)).build();
+    }
+
+    @GET
+    @Path("changes")
+    @Produces("application/json")
+    public Response getChanges(@QueryParam("since") Long since, @QueryParam("wait") Integer waitSeconds) throws UnauthorizedAccessException
+    {
+        String user = userManager.getRemoteUsername();
+        long waitMillis = waitSeconds != null ? waitSeconds * 1000L : 0;
+        try
+        {
+            return Response.ok(speakeasyManager.getChanges(user, since, waitMillis)).build();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            return Response.status(Response.Status.SERVICE_UNAVAILABLE).build();
+        }
     }
 
     @PUT
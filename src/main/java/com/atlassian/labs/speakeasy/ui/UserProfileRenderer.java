@@ -99,7 +99,7 @@ public class UserProfileRenderer
 
         final UserPlugins plugins = speakeasyManager.getRemotePluginList(user);
         render("templates/user" + (useUserProfileDecorator ? "-with-decorator" : "") + ".vm", ImmutableMap.<String, Object>builder().
-                put("accessList", speakeasyManager.getRemotePluginList(user)).
+                put("accessList", plugins).
                 put("user", user).
                 put("baseUrl", applicationProperties.getBaseUrl()).
                 put("contextPath", req.getContextPath()).
@@ -0,0 +1,50 @@
+package com.atlassian.labs.speakeasy.usage;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import java.io.IOException;
+
+/**
+ * Marks the bounds of each request, so the access conditions of an extension's generated modules count one page load
+ * between them rather than one per module
+ */
+public class PageLoadFilter implements Filter
+{
+    private final UsageCounters usageCounters;
+
+    public PageLoadFilter(UsageCounters usageCounters)
+    {
+        this.usageCounters = usageCounters;
+    }
+
+    public void init(FilterConfig filterConfig) throws ServletException
+    {
+    }
+
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) throws IOException, ServletException
+    {
+        if (usageCounters.startRequest())
+        {
+            try
+            {
+                chain.doFilter(request, response);
+            }
+            finally
+            {
+                usageCounters.endRequest();
+            }
+        }
+        else
+        {
+            chain.doFilter(request, response);
+        }
+    }
+
+    public void destroy()
+    {
+    }
+}
@@ -0,0 +1,283 @@
+package com.atlassian.labs.speakeasy.usage;
+
+import com.atlassian.labs.speakeasy.data.SpeakeasyStorage;
+import com.atlassian.labs.speakeasy.data.SpeakeasyStorageFactory;
+import com.atlassian.labs.speakeasy.model.ExtensionUsage;
+import com.atlassian.labs.speakeasy.usage.external.UsageRecorder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts how each extension is used.  Counts are added to striped cells picked by thread, so requests recording usage
+ * at the same time rarely touch the same cell, and are only written to storage, added to the totals already there, once
+ * per interval.  A page load is counted at most once per extension per request, however many of the extension's
+ * generated modules the page checks access to, and only within a request started by {@link PageLoadFilter}.
+ */
+public class UsageCounters implements UsageRecorder, DisposableBean
+{
+    /**
+     * System property for the interval in milliseconds between writes.  An interval of zero or less only writes when
+     * Speakeasy is stopped.
+     */
+    public static final String INTERVAL_PROPERTY = "speakeasy.usage.interval";
+    static final long DEFAULT_INTERVAL = 60 * 1000;
+
+    static final int ENABLES = 0;
+    static final int DISABLES = 1;
+    static final int PAGE_LOADS = 2;
+    static final int DOWNLOADS = 3;
+    private static final String[] NAMES = {"enables", "disables", "pageLoads", "downloads"};
+
+    static final int STRIPES = 16;
+    // each stripe takes a cache line of its own, so threads using different stripes don't slow each other down
+    private static final int STRIDE = 8;
+
+    private final SpeakeasyStorage storage;
+    private final ConcurrentMap<String, Cells> counters = new ConcurrentHashMap<String, Cells>();
+    private final ThreadLocal<Set<String>> pageLoads = new ThreadLocal<Set<String>>();
+    private final ScheduledThreadPoolExecutor executor;
+    private static final Logger log = LoggerFactory.getLogger(UsageCounters.class);
+
+    public UsageCounters(SpeakeasyStorageFactory storageFactory)
+    {
+        this(storageFactory.getStorage(), Long.getLong(INTERVAL_PROPERTY, DEFAULT_INTERVAL));
+    }
+
+    UsageCounters(SpeakeasyStorage storage, long interval)
+    {
+        this.storage = storage;
+        this.executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory()
+        {
+            private final ThreadFactory delegate = Executors.defaultThreadFactory();
+
+            public Thread newThread(Runnable r)
+            {
+                Thread thread = delegate.newThread(r);
+                thread.setName("speakeasy-usage-writer");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        if (interval > 0)
+        {
+            executor.scheduleWithFixedDelay(new Runnable()
+            {
+                public void run()
+                {
+                    flush();
+                }
+            }, interval, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public void recordEnable(String pluginKey, int users)
+    {
+        getCells(pluginKey).add(ENABLES, users);
+    }
+
+    public void recordDisable(String pluginKey, int users)
+    {
+        getCells(pluginKey).add(DISABLES, users);
+    }
+
+    public void recordPageLoad(String pluginKey)
+    {
+        Set<String> loaded = pageLoads.get();
+        if (loaded != null && loaded.add(pluginKey))
+        {
+            getCells(pluginKey).add(PAGE_LOADS, 1);
+        }
+    }
+
+    /**
+     * Starts counting page loads for the request on the current thread
+     *
+     * @return False if a request was already started on this thread, in which case it is left to be ended by whoever
+     * started it
+     */
+    public boolean startRequest()
+    {
+        if (pageLoads.get() != null)
+        {
+            return false;
+        }
+        pageLoads.set(new HashSet<String>());
+        return true;
+    }
+
+    public void endRequest()
+    {
+        pageLoads.remove();
+    }
+
+    public void recordDownload(String pluginKey)
+    {
+        getCells(pluginKey).add(DOWNLOADS, 1);
+    }
+
+    /**
+     * @return The stored totals of the extension plus the counts not written yet
+     */
+    public synchronized ExtensionUsage getUsage(String pluginKey)
+    {
+        long[] totals = read(pluginKey);
+        Cells cells = counters.get(pluginKey);
+        if (cells != null)
+        {
+            long[] pending = cells.sum(false);
+            for (int x = 0; x < totals.length; x++)
+            {
+                totals[x] += pending[x];
+            }
+        }
+        return new ExtensionUsage(pluginKey, totals[ENABLES], totals[DISABLES], totals[PAGE_LOADS], totals[DOWNLOADS]);
+    }
+
+    /**
+     * Adds the counts not written yet to the stored totals
+     */
+    public synchronized void flush()
+    {
+        for (Map.Entry<String, Cells> entry : counters.entrySet())
+        {
+            String pluginKey = entry.getKey();
+            long[] pending = entry.getValue().sum(true);
+            if (isEmpty(pending))
+            {
+                continue;
+            }
+            try
+            {
+                long[] totals = read(pluginKey);
+                Map<String, String> values = new HashMap<String, String>();
+                for (int x = 0; x < totals.length; x++)
+                {
+                    values.put(NAMES[x], String.valueOf(totals[x] + pending[x]));
+                }
+                storage.put(createUsageKey(pluginKey), values);
+            }
+            catch (RuntimeException ex)
+            {
+                // keep the counts for the next attempt
+                for (int x = 0; x < pending.length; x++)
+                {
+                    entry.getValue().add(x, pending[x]);
+                }
+                log.error("Unable to save the usage of '" + pluginKey + "'", ex);
+            }
+        }
+    }
+
+    public void destroy()
+    {
+        executor.shutdown();
+        flush();
+    }
+
+    private Cells getCells(String pluginKey)
+    {
+        Cells cells = counters.get(pluginKey);
+        if (cells == null)
+        {
+            Cells newCells = new Cells();
+            cells = counters.putIfAbsent(pluginKey, newCells);
+            if (cells == null)
+            {
+                cells = newCells;
+            }
+        }
+        return cells;
+    }
+
+    private long[] read(String pluginKey)
+    {
+        long[] totals = new long[NAMES.length];
+        Map<String, String> values = (Map<String, String>) storage.get(createUsageKey(pluginKey));
+        if (values != null)
+        {
+            for (int x = 0; x < NAMES.length; x++)
+            {
+                String value = values.get(NAMES[x]);
+                try
+                {
+                    totals[x] = value != null ? Long.parseLong(value) : 0;
+                }
+                catch (NumberFormatException ex)
+                {
+                    totals[x] = 0;
+                }
+            }
+        }
+        return totals;
+    }
+
+    private static boolean isEmpty(long[] counts)
+    {
+        for (long count : counts)
+        {
+            if (count != 0)
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String createUsageKey(String pluginKey)
+    {
+        return "speakeasy-" + pluginKey + "-usage";
+    }
+
+    /**
+     * The counts of one extension, spread over a cell per stripe for each kind of usage
+     */
+    private static class Cells
+    {
+        private final AtomicLongArray cells = new AtomicLongArray(STRIPES * STRIDE);
+
+        public void add(int type, long delta)
+        {
+            if (delta != 0)
+            {
+                cells.addAndGet(stripe() * STRIDE + type, delta);
+            }
+        }
+
+        /**
+         * @param reset Whether to take the counts out of the cells, so each count is only ever written once
+         */
+        public long[] sum(boolean reset)
+        {
+            long[] totals = new long[NAMES.length];
+            for (int stripe = 0; stripe < STRIPES; stripe++)
+            {
+                for (int type = 0; type < NAMES.length; type++)
+                {
+                    int index = stripe * STRIDE + type;
+                    totals[type] += reset ? cells.getAndSet(index, 0) : cells.get(index);
+                }
+            }
+            return totals;
+        }
+
+        private static int stripe()
+        {
+            long id = Thread.currentThread().getId();
+            return (int) (id ^ (id >>> 16)) & (STRIPES - 1);
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.atlassian.labs.speakeasy.usage.external;
+
+/**
+ * Counts how extensions are used.  Exported so code running in other bundles, such as the conditions of generated
+ * descriptors, can record usage.
+ */
+public interface UsageRecorder
+{
+    void recordEnable(String pluginKey, int users);
+
+    void recordDisable(String pluginKey, int users);
+
+    /**
+     * Records a page showing the extension to its user.  Calls within the same request count as one page load.
+     */
+    void recordPageLoad(String pluginKey);
+
+    /**
+     * Records a CommonJS module of the extension being downloaded
+     */
+    void recordDownload(String pluginKey);
+}
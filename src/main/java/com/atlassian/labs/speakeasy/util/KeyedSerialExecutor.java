@@ -0,0 +1,219 @@
+package com.atlassian.labs.speakeasy.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs tasks on a bounded pool of threads, in parallel for different keys but one at a time, in the order they were
+ * submitted, for the same key.  Tasks still queued when the executor is shut down are cancelled, so nobody waits on
+ * them.
+ */
+public class KeyedSerialExecutor
+{
+    private final ThreadPoolExecutor pool;
+    private final Map<String, LinkedList<FutureTask<?>>> queues = new HashMap<String, LinkedList<FutureTask<?>>>();
+    private final ThreadLocal<String> runningKey = new ThreadLocal<String>();
+    private boolean shutdown;
+
+    public KeyedSerialExecutor(final String threadName, int threads)
+    {
+        this.pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory()
+        {
+            private final ThreadFactory delegate = Executors.defaultThreadFactory();
+
+            public Thread newThread(Runnable r)
+            {
+                Thread thread = delegate.newThread(r);
+                thread.setName(threadName);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        pool.allowCoreThreadTimeOut(true);
+    }
+
+    public <T> Future<T> submit(String key, Callable<T> task)
+    {
+        FutureTask<T> future = new FutureTask<T>(task);
+        if (enqueue(key, future))
+        {
+            pool.execute(new KeyRunner(key, future));
+        }
+        return future;
+    }
+
+    /**
+     * Runs the task on the calling thread if no task of the key is queued or running, so the caller doesn't need to
+     * wait on a pool thread, otherwise queues it after them.  Either way the task runs in order with the other tasks of
+     * the key.
+     *
+     * @return The future of the task, which is done when this returns if the task ran on the calling thread
+     */
+    public <T> Future<T> callOrSubmit(String key, Callable<T> task)
+    {
+        FutureTask<T> future = new FutureTask<T>(task);
+        if (enqueue(key, future))
+        {
+            new KeyRunner(key, future).runFirst();
+        }
+        return future;
+    }
+
+    /**
+     * @return True if called from any of the tasks, which mustn't hold their thread waiting for other tasks
+     */
+    public boolean isExecutorThread()
+    {
+        return runningKey.get() != null;
+    }
+
+    /**
+     * @return True if called from a task of the key, which would never see later tasks of its key run if it waited
+     */
+    public boolean isRunning(String key)
+    {
+        return key.equals(runningKey.get());
+    }
+
+    /**
+     * Stops the threads and cancels the tasks that haven't started
+     */
+    public void shutdown()
+    {
+        List<FutureTask<?>> cancelled = new ArrayList<FutureTask<?>>();
+        synchronized (queues)
+        {
+            shutdown = true;
+            for (LinkedList<FutureTask<?>> queue : queues.values())
+            {
+                cancelled.addAll(queue);
+                queue.clear();
+            }
+        }
+        for (Runnable runnable : pool.shutdownNow())
+        {
+            cancelled.add(((KeyRunner) runnable).first);
+        }
+        for (FutureTask<?> future : cancelled)
+        {
+            future.cancel(false);
+        }
+    }
+
+    /**
+     * @return True if the task is the first of its key, and so should be run straight away
+     */
+    private boolean enqueue(String key, FutureTask<?> future)
+    {
+        synchronized (queues)
+        {
+            if (shutdown)
+            {
+                future.cancel(false);
+                return false;
+            }
+            LinkedList<FutureTask<?>> queue = queues.get(key);
+            if (queue != null)
+            {
+                // a task for the key is running, and will run this one once the earlier ones are done
+                queue.add(future);
+                return false;
+            }
+            queues.put(key, new LinkedList<FutureTask<?>>());
+            return true;
+        }
+    }
+
+    /**
+     * Runs the tasks of a key until there are none left
+     */
+    private class KeyRunner implements Runnable
+    {
+        private final String key;
+        private final FutureTask<?> first;
+
+        public KeyRunner(String key, FutureTask<?> first)
+        {
+            this.key = key;
+            this.first = first;
+        }
+
+        public void run()
+        {
+            FutureTask<?> next = first;
+            while (next != null)
+            {
+                runTask(next);
+                next = poll();
+            }
+        }
+
+        /**
+         * Runs the first task on the calling thread, then hands any tasks queued meanwhile to the pool
+         */
+        public void runFirst()
+        {
+            runTask(first);
+            FutureTask<?> next = poll();
+            if (next != null)
+            {
+                try
+                {
+                    pool.execute(new KeyRunner(key, next));
+                }
+                catch (RejectedExecutionException ex)
+                {
+                    // shut down while the first task ran
+                    next.cancel(false);
+                }
+            }
+        }
+
+        private void runTask(FutureTask<?> task)
+        {
+            String previousKey = runningKey.get();
+            runningKey.set(key);
+            try
+            {
+                task.run();
+            }
+            finally
+            {
+                if (previousKey != null)
+                {
+                    runningKey.set(previousKey);
+                }
+                else
+                {
+                    runningKey.remove();
+                }
+            }
+        }
+
+        private FutureTask<?> poll()
+        {
+            synchronized (queues)
+            {
+                LinkedList<FutureTask<?>> queue = queues.get(key);
+                FutureTask<?> next = queue != null ? queue.poll() : null;
+                if (next == null)
+                {
+                    queues.remove(key);
+                }
+                return next;
+            }
+        }
+    }
+}
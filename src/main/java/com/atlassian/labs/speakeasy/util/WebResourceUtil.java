@@ -6,11 +6,9 @@ import com.atlassian.plugin.ModuleDescriptor;
 import com.atlassian.plugin.Plugin;
 import com.atlassian.plugin.hostcontainer.HostContainer;
 import com.atlassian.plugin.webresource.WebResourceModuleDescriptor;
-import org.apache.commons.lang.StringUtils;
 import org.dom4j.Element;
 
 import java.lang.reflect.InvocationTargetException;
-import java.util.List;
 
 /**
  *
@@ -62,13 +60,17 @@ public class WebResourceUtil
         return descriptor;
     }
 
-    public static void addUsersCondition(List<String> users, Element userElement)
+    /**
+     * Adds a condition only showing the element to users who have enabled the extension, looked up when the condition
+     * is checked so access changes don't need the descriptor to be regenerated
+     */
+    public static void addAccessCondition(String pluginKey, Element userElement)
     {
         Element condElement = userElement.addElement("condition");
         condElement.addAttribute("class", UserScopedCondition.class.getName());
-        Element paramElement = condElement.addElement("param");
-        paramElement.addAttribute("name", "users");
-        paramElement.setText(users != null ? StringUtils.join(users, "|") : "");
+        Element pluginKeyElement = condElement.addElement("param");
+        pluginKeyElement.addAttribute("name", "pluginKey");
+        pluginKeyElement.setText(pluginKey);
     }
 
     public static void resolveDependency(Plugin plugin, Element dep, long state)
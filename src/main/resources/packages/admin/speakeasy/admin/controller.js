@@ -1,11 +1,17 @@
 var Settings = require('./model').Settings;
 var SettingsView = require('./view').View;
 var SettingsEdit = require('./view').Edit;
+var Usage = require('./model').Usage;
+var UsageView = require('./view').UsageView;
 var Backbone = require('backbone');
 
 var doc = new Settings(window.settings);
 
 var Controller = Backbone.Controller.extend({
+    initialize: function() {
+        new UsageView({ model: new Usage() });
+    },
+
     routes: {
         "":                         "view",
         "edit":                     "edit"
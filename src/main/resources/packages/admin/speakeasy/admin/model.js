@@ -11,4 +11,12 @@ var Settings = Backbone.Model.extend({
     authorGroups : []
 });
 
+var Usage = Backbone.Model.extend({
+    url : function() {
+      return window.contextPath + '/rest/speakeasy/1/admin/usage';
+    },
+    extensions : []
+});
+
 exports.Settings = Settings;
+exports.Usage = Usage;
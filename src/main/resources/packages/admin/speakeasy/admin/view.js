@@ -77,7 +77,26 @@ var Edit = Backbone.View.extend({
         $('#sp-author-groups-edit').val(this.model.get('authorGroups').join('\n'));
     }
 });
+var UsageView = Backbone.View.extend({
+    el: $('#sp-usage'),
+    initialize: function() {
+        _.bindAll(this, 'render');
+        this.model.bind('change', this.render);
+        this.model.fetch();
+    },
+
+    render: function() {
+        var body = $('tbody', this.el).empty();
+        _.each(this.model.get('extensions') || [], function(usage) {
+            var row = $('<tr />').appendTo(body);
+            $.each([usage.key, usage.enables, usage.disables, usage.pageLoads, usage.downloads], function(i, value) {
+                $('<td />').text(String(value)).appendTo(row);
+            });
+        });
+    }
+});
 exports.Edit = Edit;
 exports.View = View;
+exports.UsageView = UsageView;
 
 
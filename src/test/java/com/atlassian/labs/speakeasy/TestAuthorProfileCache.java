@@ -0,0 +1,81 @@
+package com.atlassian.labs.speakeasy;
+
+import com.atlassian.labs.speakeasy.product.ProductAccessor;
+import com.atlassian.sal.api.user.UserManager;
+import com.atlassian.sal.api.user.UserProfile;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Map;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ *
+ */
+public class TestAuthorProfileCache
+{
+    private UserManager userManager;
+    private ProductAccessor productAccessor;
+
+    @Before
+    public void setUp()
+    {
+        userManager = mock(UserManager.class);
+        productAccessor = mock(ProductAccessor.class);
+        UserProfile bob = mock(UserProfile.class);
+        when(bob.getFullName()).thenReturn("Bob Smith");
+        when(userManager.getUserProfile("bob")).thenReturn(bob);
+        when(productAccessor.getUserFullName("bob")).thenReturn("Bob Smith");
+    }
+
+    @Test
+    public void testResolvesEachAuthorOnce()
+    {
+        AuthorProfileCache cache = new AuthorProfileCache(userManager, productAccessor);
+        Map<String, String> names = cache.resolveDisplayNames(asList("bob", "jim", "bob"));
+        assertEquals("Bob Smith", names.get("bob"));
+        assertEquals("jim", names.get("jim"));
+        assertEquals("Bob Smith", cache.getDisplayName("bob"));
+
+        verify(userManager, times(1)).getUserProfile("bob");
+        verify(userManager, times(1)).getUserProfile("jim");
+        assertEquals(2, cache.getStatistics().getMisses());
+        assertEquals(1, cache.getStatistics().getHits());
+        assertEquals(2, cache.getStatistics().getSize());
+    }
+
+    @Test
+    public void testFullNameCached()
+    {
+        AuthorProfileCache cache = new AuthorProfileCache(userManager, productAccessor);
+        assertEquals("Bob Smith", cache.getFullName("bob"));
+        assertEquals("Bob Smith", cache.getFullName("bob"));
+        verify(productAccessor, times(1)).getUserFullName("bob");
+    }
+
+    @Test
+    public void testExpired()
+    {
+        AuthorProfileCache cache = new AuthorProfileCache(userManager, productAccessor, 10, -1);
+        cache.getDisplayName("bob");
+        cache.getDisplayName("bob");
+        verify(userManager, times(2)).getUserProfile("bob");
+    }
+
+    @Test
+    public void testBounded()
+    {
+        AuthorProfileCache cache = new AuthorProfileCache(userManager, productAccessor, 1, AuthorProfileCache.TTL);
+        cache.getDisplayName("bob");
+        cache.getDisplayName("jim");
+        cache.getDisplayName("bob");
+        assertEquals(1, cache.getStatistics().getSize());
+        verify(userManager, times(2)).getUserProfile("bob");
+    }
+}
@@ -0,0 +1,219 @@
+package com.atlassian.labs.speakeasy;
+
+import com.atlassian.labs.speakeasy.metrics.SpeakeasyMetrics;
+import com.atlassian.plugin.ModuleDescriptor;
+import com.atlassian.plugin.event.PluginEventManager;
+import com.atlassian.plugin.osgi.factory.OsgiPlugin;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceReference;
+import org.osgi.framework.ServiceRegistration;
+
+import java.util.Collections;
+import java.util.Dictionary;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyObject;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ *
+ */
+public class TestDescriptorGeneratorManager
+{
+    private BundleContext bundleContext;
+    private BundleContext pluginBundleContext;
+    private ModuleStateTracker moduleStateTracker;
+    private ServiceRegistration registration;
+    private DescriptorGeneratorManager manager;
+
+    @Before
+    public void setUp()
+    {
+        bundleContext = mock(BundleContext.class);
+        pluginBundleContext = mock(BundleContext.class);
+        Bundle bundle = mock(Bundle.class);
+        Dictionary<String, String> headers = new Hashtable<String, String>();
+        headers.put(OsgiPlugin.ATLASSIAN_PLUGIN_KEY, "foo");
+        when(bundle.getHeaders()).thenReturn(headers);
+        when(bundle.getLastModified()).thenReturn(1L);
+        when(bundle.getBundleContext()).thenReturn(pluginBundleContext);
+        when(bundleContext.getBundles()).thenReturn(new Bundle[] {bundle});
+        moduleStateTracker = mock(ModuleStateTracker.class);
+        manager = new DescriptorGeneratorManager(bundleContext, moduleStateTracker, mock(PluginEventManager.class),
+                mock(SpeakeasyMetrics.class));
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        manager.destroy();
+    }
+
+    @Test
+    public void testWaitsOnceApplicationStarted()
+    {
+        ModuleDescriptor descriptor = mockRegistration();
+        manager.onStart();
+        manager.registerGenerator("foo", "bar", new StaticGenerator(descriptor));
+        verify(moduleStateTracker).waitUntilEnabled(asList(descriptor));
+    }
+
+    @Test
+    public void testStartupDoesntWait() throws Exception
+    {
+        mockRegistration();
+        BlockingGenerator generator = new BlockingGenerator();
+        long start = System.currentTimeMillis();
+        manager.registerGenerator("foo", "bar", generator);
+        assertTrue(System.currentTimeMillis() - start < 500);
+        generator.release.countDown();
+    }
+
+    @Test
+    public void testDoesntWaitForBusyPlugin() throws Exception
+    {
+        mockRegistration();
+        BlockingGenerator blocking = new BlockingGenerator();
+        manager.registerGenerator("foo", "bar", blocking);
+        manager.onStart();
+
+        BlockingGenerator queued = new BlockingGenerator();
+        queued.release.countDown();
+        long start = System.currentTimeMillis();
+        manager.registerGenerator("foo", "baz", queued);
+        assertTrue(System.currentTimeMillis() - start < 500);
+        assertFalse(queued.finished);
+
+        blocking.release.countDown();
+        assertTrue(queued.done.await(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testQueuedWorkCancelledOnDestroy() throws Exception
+    {
+        mockRegistration();
+        BlockingGenerator blocking = new BlockingGenerator();
+        manager.registerGenerator("foo", "bar", blocking);
+        BlockingGenerator queued = new BlockingGenerator();
+        queued.release.countDown();
+        manager.registerGenerator("foo", "baz", queued);
+
+        manager.destroy();
+        blocking.release.countDown();
+        assertFalse(queued.done.await(200, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testGeneratorRegisteredByOwnPluginRunsInline()
+    {
+        final ModuleDescriptor descriptor = mockRegistration();
+        manager.onStart();
+        manager.registerGenerator("foo", "bar", new DescriptorGenerator<ModuleDescriptor>()
+        {
+            public Iterable<ModuleDescriptor> getDescriptorsToExpose(long state)
+            {
+                // as when registering a descriptor enables another generator of the plugin
+                manager.registerGenerator("foo", "baz", new StaticGenerator(descriptor));
+                return Collections.emptyList();
+            }
+        });
+        verify(moduleStateTracker).waitUntilEnabled(asList(descriptor));
+    }
+
+    @Test
+    public void testRegisterUnregisterAndRegisterAgain()
+    {
+        ModuleDescriptor descriptor = mockRegistration();
+        manager.onStart();
+        StaticGenerator generator = new StaticGenerator(descriptor);
+
+        manager.registerGenerator("foo", "bar", generator);
+        assertEquals(asList(descriptor), manager.unregisterGenerator("foo", "bar"));
+        verify(registration).unregister();
+        assertEquals(Collections.<ModuleDescriptor>emptyList(), manager.unregisterGenerator("foo", "bar"));
+
+        manager.registerGenerator("foo", "bar", generator);
+        verify(pluginBundleContext, times(2)).registerService(anyString(), anyObject(), (Dictionary) any());
+        assertEquals(asList(descriptor), manager.unregisterGenerator("foo", "bar"));
+        verify(registration, times(2)).unregister();
+    }
+
+    @Test
+    public void testRegisteringAgainReplacesServices()
+    {
+        ModuleDescriptor descriptor = mockRegistration();
+        manager.onStart();
+        manager.registerGenerator("foo", "bar", new StaticGenerator(descriptor));
+        manager.registerGenerator("foo", "baz", new StaticGenerator(descriptor));
+        manager.registerGenerator("foo", "bar", new StaticGenerator(descriptor));
+
+        verify(registration, times(1)).unregister();
+        verify(moduleStateTracker, times(1)).waitUntilDisabled(asList(descriptor));
+        assertEquals(asList(descriptor), manager.unregisterGenerator("foo", "bar"));
+        assertEquals(asList(descriptor), manager.unregisterGenerator("foo", "baz"));
+    }
+
+    private ModuleDescriptor mockRegistration()
+    {
+        ModuleDescriptor descriptor = mock(ModuleDescriptor.class);
+        ServiceReference ref = mock(ServiceReference.class);
+        registration = mock(ServiceRegistration.class);
+        when(registration.getReference()).thenReturn(ref);
+        when(bundleContext.getService(ref)).thenReturn(descriptor);
+        when(pluginBundleContext.registerService(anyString(), anyObject(), (Dictionary) any())).thenReturn(registration);
+        return descriptor;
+    }
+
+    private static class StaticGenerator implements DescriptorGenerator<ModuleDescriptor>
+    {
+        private final List<ModuleDescriptor> descriptors;
+
+        public StaticGenerator(ModuleDescriptor... descriptors)
+        {
+            this.descriptors = asList(descriptors);
+        }
+
+        public Iterable<ModuleDescriptor> getDescriptorsToExpose(long state)
+        {
+            return descriptors;
+        }
+    }
+
+    private static class BlockingGenerator implements DescriptorGenerator<ModuleDescriptor>
+    {
+        private final CountDownLatch release = new CountDownLatch(1);
+        private final CountDownLatch done = new CountDownLatch(1);
+        private volatile boolean finished;
+
+        public Iterable<ModuleDescriptor> getDescriptorsToExpose(long state)
+        {
+            try
+            {
+                release.await(10, TimeUnit.SECONDS);
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+            finished = true;
+            done.countDown();
+            return Collections.emptyList();
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.atlassian.labs.speakeasy;
+
+import com.atlassian.labs.speakeasy.data.SpeakeasyData;
+import com.atlassian.plugin.event.PluginEventManager;
+import org.junit.Before;
+import org.junit.Test;
+
+import static com.google.common.collect.Sets.newHashSet;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+/**
+ *
+ */
+public class TestExtensionChangeLog
+{
+    private SpeakeasyData data;
+    private ExtensionChangeLog changeLog;
+
+    @Before
+    public void setUp()
+    {
+        data = mock(SpeakeasyData.class);
+        changeLog = new ExtensionChangeLog(mock(PluginEventManager.class), data, 4, 100);
+    }
+
+    @Test
+    public void testChangesSince()
+    {
+        changeLog.record("foo");
+        changeLog.record("bar");
+        changeLog.record("foo");
+
+        ExtensionChangeLog.Changes changes = changeLog.getChangesSince(100);
+        assertFalse(changes.isReset());
+        assertEquals(103, changes.getVersion());
+        assertEquals(newHashSet("foo", "bar"), changes.getPluginKeys());
+        assertEquals(newHashSet("foo"), changeLog.getChangesSince(102).getPluginKeys());
+        assertTrue(changeLog.getChangesSince(103).getPluginKeys().isEmpty());
+    }
+
+    @Test
+    public void testResetWhenChangesFallOutOfRing()
+    {
+        for (int x = 0; x < 5; x++)
+        {
+            changeLog.record("foo" + x);
+        }
+        assertTrue(changeLog.getChangesSince(100).isReset());
+        assertEquals(newHashSet("foo1", "foo2", "foo3", "foo4"), changeLog.getChangesSince(101).getPluginKeys());
+    }
+
+    @Test
+    public void testResetForUnknownVersions()
+    {
+        assertTrue(changeLog.getChangesSince(50).isReset());
+        assertTrue(changeLog.getChangesSince(101).isReset());
+    }
+
+    @Test
+    public void testReset()
+    {
+        changeLog.record("foo");
+        changeLog.reset();
+        changeLog.record("bar");
+        assertTrue(changeLog.getChangesSince(101).isReset());
+        assertEquals(newHashSet("bar"), changeLog.getChangesSince(102).getPluginKeys());
+    }
+
+    @Test
+    public void testWaitReturnsOnChange() throws Exception
+    {
+        new Thread()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    Thread.sleep(100);
+                }
+                catch (InterruptedException e)
+                {
+                    // ignore
+                }
+                changeLog.record("foo");
+            }
+        }.start();
+        ExtensionChangeLog.Changes changes = changeLog.waitForChangesSince(100, 10000);
+        assertEquals(newHashSet("foo"), changes.getPluginKeys());
+    }
+
+    @Test
+    public void testWaitTimesOut() throws Exception
+    {
+        assertTrue(changeLog.waitForChangesSince(100, 50).getPluginKeys().isEmpty());
+    }
+
+    @Test
+    public void testRecordsDataChanges()
+    {
+        verify(data).addListener(changeLog);
+        changeLog.onExtensionChanged("foo");
+        assertEquals(newHashSet("foo"), changeLog.getChangesSince(100).getPluginKeys());
+        changeLog.onAllExtensionsChanged();
+        assertTrue(changeLog.getChangesSince(101).isReset());
+    }
+}
@@ -0,0 +1,112 @@
+package com.atlassian.labs.speakeasy;
+
+import com.atlassian.labs.speakeasy.commonjs.descriptor.CommonJsModulesDescriptor;
+import com.atlassian.labs.speakeasy.install.convention.ConventionMetadataCache;
+import com.atlassian.plugin.ModuleDescriptor;
+import com.atlassian.plugin.Plugin;
+import com.atlassian.plugin.event.PluginEventManager;
+import com.atlassian.plugin.event.events.PluginModuleEnabledEvent;
+import com.atlassian.plugin.osgi.factory.OsgiPlugin;
+import com.google.common.collect.Sets;
+import org.junit.Before;
+import org.junit.Test;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+
+import java.net.URL;
+import java.util.Hashtable;
+
+import static com.google.common.collect.Sets.newHashSet;
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ *
+ */
+public class TestExtensionClassificationCache
+{
+    private BundleContext bundleContext;
+    private Bundle bundle;
+    private Plugin plugin;
+    private CommonJsModulesDescriptor modulesDescriptor;
+    private ExtensionClassificationCache cache;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        bundle = mock(Bundle.class);
+        Hashtable<String, String> headers = new Hashtable<String, String>();
+        headers.put(OsgiPlugin.ATLASSIAN_PLUGIN_KEY, "foo");
+        when(bundle.getHeaders()).thenReturn(headers);
+        when(bundle.getLastModified()).thenReturn(1000L);
+        when(bundle.getState()).thenReturn(Bundle.ACTIVE);
+        bundleContext = mock(BundleContext.class);
+        when(bundleContext.getBundles()).thenReturn(new Bundle[] {bundle});
+
+        modulesDescriptor = mock(CommonJsModulesDescriptor.class);
+        when(modulesDescriptor.getKey()).thenReturn("foo-modules");
+        when(modulesDescriptor.getUnresolvedExternalModuleDependencies()).thenReturn(newHashSet("bar/baz"));
+        plugin = mock(Plugin.class);
+        when(plugin.getKey()).thenReturn("foo");
+        when(plugin.getResource("/atlassian-plugin.xml")).thenReturn(new URL("file:/atlassian-plugin.xml"));
+        doReturn(asList(modulesDescriptor)).when(plugin).getModuleDescriptors();
+
+        cache = new ExtensionClassificationCache(bundleContext, mock(ConventionMetadataCache.class), mock(PluginEventManager.class));
+    }
+
+    @Test
+    public void testClassification()
+    {
+        ExtensionClassificationCache.Classification classification = cache.getClassification(plugin);
+        assertEquals("jar", classification.getExtension());
+        assertTrue(classification.isPureSpeakeasy());
+    }
+
+    @Test
+    public void testNotPureSpeakeasy()
+    {
+        ModuleDescriptor servlet = mock(ModuleDescriptor.class);
+        when(servlet.getKey()).thenReturn("servlet");
+        doReturn(asList(modulesDescriptor, servlet)).when(plugin).getModuleDescriptors();
+        assertFalse(cache.getClassification(plugin).isPureSpeakeasy());
+    }
+
+    @Test
+    public void testCachedUntilBundleChanges()
+    {
+        cache.getClassification(plugin);
+        cache.getClassification(plugin);
+        verify(bundleContext, times(1)).getBundles();
+
+        when(bundle.getLastModified()).thenReturn(2000L);
+        cache.getClassification(plugin);
+        verify(bundleContext, times(2)).getBundles();
+    }
+
+    @Test
+    public void testCachedUntilPluginReplaced()
+    {
+        cache.getClassification(plugin);
+        Plugin upgraded = mock(Plugin.class);
+        when(upgraded.getKey()).thenReturn("foo");
+        assertEquals("xml", cache.getClassification(upgraded).getExtension());
+    }
+
+    @Test
+    public void testDependenciesRecalculatedWhenModulesChange()
+    {
+        assertEquals(newHashSet("bar/baz"), cache.getUnresolvedCommonJsDependencies(plugin));
+        when(modulesDescriptor.getUnresolvedExternalModuleDependencies()).thenReturn(Sets.<String>newHashSet());
+        assertEquals(newHashSet("bar/baz"), cache.getUnresolvedCommonJsDependencies(plugin));
+
+        cache.onPluginModuleEnabled(new PluginModuleEnabledEvent(mock(CommonJsModulesDescriptor.class)));
+        assertTrue(cache.getUnresolvedCommonJsDependencies(plugin).isEmpty());
+    }
+}
@@ -0,0 +1,89 @@
+package com.atlassian.labs.speakeasy;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static com.google.common.collect.ImmutableMap.of;
+import static com.google.common.collect.Sets.newHashSet;
+import static junit.framework.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ *
+ */
+public class TestForkIndex
+{
+    private ForkIndex index;
+
+    @Before
+    public void setUp()
+    {
+        index = new ForkIndex();
+    }
+
+    @Test
+    public void testBuild()
+    {
+        assertFalse(index.isBuilt());
+        index.build(of("foo-fork-bob", "bob", "foo-fork-jim", "jim"));
+        assertTrue(index.isBuilt());
+        assertEquals("foo-fork-bob", index.getFork("foo", "bob"));
+        assertEquals(newHashSet("foo-fork-bob", "foo-fork-jim"), index.getForks("foo"));
+    }
+
+    @Test
+    public void testIgnoresNonForks()
+    {
+        index.add("foo", "bob");
+        assertNull(index.getFork("foo", "bob"));
+        assertTrue(index.getForks("foo").isEmpty());
+    }
+
+    @Test
+    public void testAddReplacesAuthor()
+    {
+        index.add("foo-fork-bob", "Some Vendor");
+        index.add("foo-fork-bob", "bob");
+        assertNull(index.getFork("foo", "Some Vendor"));
+        assertEquals("foo-fork-bob", index.getFork("foo", "bob"));
+    }
+
+    @Test
+    public void testIgnoresForksWithoutAuthor()
+    {
+        index.add("foo-fork-bob", "bob");
+        index.add("foo-fork-bob", null);
+        index.add("foo-fork-jim", null);
+        assertNull(index.getFork("foo", "bob"));
+        assertNull(index.getFork("foo", null));
+        assertTrue(index.getForks("foo").isEmpty());
+    }
+
+    @Test
+    public void testGetForksReturnsCopy()
+    {
+        index.add("foo-fork-bob", "bob");
+        index.getForks("foo").clear();
+        assertEquals(newHashSet("foo-fork-bob"), index.getForks("foo"));
+    }
+
+    @Test
+    public void testRemove()
+    {
+        index.add("foo-fork-bob", "bob");
+        index.remove("foo-fork-bob");
+        assertNull(index.getFork("foo", "bob"));
+        assertTrue(index.getForks("foo").isEmpty());
+    }
+
+    @Test
+    public void testReset()
+    {
+        index.build(of("foo-fork-bob", "bob"));
+        index.reset();
+        assertFalse(index.isBuilt());
+        assertNull(index.getFork("foo", "bob"));
+    }
+}
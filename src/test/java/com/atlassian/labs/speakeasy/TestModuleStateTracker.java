@@ -0,0 +1,125 @@
+package com.atlassian.labs.speakeasy;
+
+import com.atlassian.plugin.ModuleDescriptor;
+import com.atlassian.plugin.PluginAccessor;
+import com.atlassian.plugin.PluginController;
+import com.atlassian.plugin.event.PluginEventManager;
+import com.atlassian.plugin.event.events.PluginModuleDisabledEvent;
+import com.atlassian.plugin.event.events.PluginModuleEnabledEvent;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ *
+ */
+public class TestModuleStateTracker
+{
+    private PluginAccessor pluginAccessor;
+    private PluginController pluginController;
+    private ModuleDescriptor descriptor;
+
+    @Before
+    public void setUp()
+    {
+        pluginAccessor = mock(PluginAccessor.class);
+        pluginController = mock(PluginController.class);
+        descriptor = mock(ModuleDescriptor.class);
+        when(descriptor.getCompleteKey()).thenReturn("foo:bar");
+    }
+
+    @Test
+    public void testWokenByEnabledEvent() throws Exception
+    {
+        final ModuleStateTracker tracker = new ModuleStateTracker(pluginAccessor, pluginController, mock(PluginEventManager.class), 10000);
+        fireLater(new Runnable()
+        {
+            public void run()
+            {
+                tracker.onPluginModuleEnabled(new PluginModuleEnabledEvent(descriptor));
+            }
+        });
+        long start = System.currentTimeMillis();
+        tracker.waitUntilEnabled(Collections.singleton(descriptor));
+        assertTrue(System.currentTimeMillis() - start < 5000);
+    }
+
+    @Test
+    public void testWokenByDisabledEvent() throws Exception
+    {
+        when(pluginAccessor.getEnabledPluginModule("foo:bar")).thenReturn(descriptor);
+        final ModuleStateTracker tracker = new ModuleStateTracker(pluginAccessor, pluginController, mock(PluginEventManager.class), 10000);
+        fireLater(new Runnable()
+        {
+            public void run()
+            {
+                tracker.onPluginModuleDisabled(new PluginModuleDisabledEvent(descriptor));
+            }
+        });
+        long start = System.currentTimeMillis();
+        tracker.waitUntilDisabled(Collections.singleton(descriptor));
+        assertTrue(System.currentTimeMillis() - start < 5000);
+    }
+
+    @Test
+    public void testEnablesModuleLeftDisabled()
+    {
+        when(pluginAccessor.getPluginModule("foo:bar")).thenReturn(descriptor);
+        when(pluginAccessor.isPluginModuleEnabled("foo:bar")).thenReturn(false);
+        ModuleStateTracker tracker = new ModuleStateTracker(pluginAccessor, pluginController, mock(PluginEventManager.class), 10000);
+        long start = System.currentTimeMillis();
+        tracker.waitUntilEnabled(Collections.singleton(descriptor));
+        assertTrue(System.currentTimeMillis() - start < 5000);
+        verify(pluginController).enablePluginModule("foo:bar");
+    }
+
+    @Test
+    public void testEnablesModuleRegisteredLaterButLeftDisabled()
+    {
+        when(pluginAccessor.getPluginModule("foo:bar")).thenReturn(null, descriptor);
+        when(pluginAccessor.isPluginModuleEnabled("foo:bar")).thenReturn(false);
+        ModuleStateTracker tracker = new ModuleStateTracker(pluginAccessor, pluginController, mock(PluginEventManager.class), 10000);
+        long start = System.currentTimeMillis();
+        assertTrue(tracker.waitUntilEnabled(Collections.singleton(descriptor)).isEmpty());
+        assertTrue(System.currentTimeMillis() - start < 5000);
+        verify(pluginController).enablePluginModule("foo:bar");
+    }
+
+    @Test
+    public void testTimesOut()
+    {
+        ModuleStateTracker tracker = new ModuleStateTracker(pluginAccessor, pluginController, mock(PluginEventManager.class), 10);
+        long start = System.currentTimeMillis();
+        Set<String> remaining = tracker.waitUntilEnabled(Collections.singleton(descriptor));
+        assertTrue(System.currentTimeMillis() - start < 1000);
+        assertEquals(Collections.singleton("foo:bar"), remaining);
+    }
+
+    private static void fireLater(final Runnable event)
+    {
+        new Thread()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    Thread.sleep(100);
+                }
+                catch (InterruptedException e)
+                {
+                    return;
+                }
+                event.run();
+            }
+        }.start();
+    }
+}
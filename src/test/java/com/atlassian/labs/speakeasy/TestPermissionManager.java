@@ -0,0 +1,84 @@
+package com.atlassian.labs.speakeasy;
+
+import com.atlassian.labs.speakeasy.model.Settings;
+import com.atlassian.sal.api.user.UserManager;
+import org.junit.Before;
+import org.junit.Test;
+
+import static com.google.common.collect.Sets.newHashSet;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ *
+ */
+public class TestPermissionManager
+{
+    private UserManager userManager;
+    private SettingsManager settingsManager;
+
+    @Before
+    public void setUp()
+    {
+        userManager = mock(UserManager.class);
+        settingsManager = mock(SettingsManager.class);
+        when(settingsManager.getSettings()).thenReturn(createSettings("users", "developers"));
+        when(userManager.isUserInGroup("bob", "users")).thenReturn(true);
+        when(userManager.isUserInGroup("bob", "developers")).thenReturn(true);
+    }
+
+    @Test
+    public void testDecisionsRemembered()
+    {
+        PermissionManager permissionManager = new PermissionManager(userManager, settingsManager);
+        assertTrue(permissionManager.canAccessSpeakeasy("bob"));
+        assertTrue(permissionManager.canAuthorExtensions("bob"));
+        assertTrue(permissionManager.canEnableExtensions("bob"));
+        assertTrue(permissionManager.canAuthorExtensions("bob"));
+
+        verify(userManager, times(1)).isUserInGroup("bob", "users");
+        verify(userManager, times(1)).isUserInGroup("bob", "developers");
+        verify(userManager, times(1)).isAdmin("bob");
+    }
+
+    @Test
+    public void testDecisionsForgottenWhenSettingsChange()
+    {
+        PermissionManager permissionManager = new PermissionManager(userManager, settingsManager);
+        assertTrue(permissionManager.canAuthorExtensions("bob"));
+
+        when(settingsManager.getSettings()).thenReturn(createSettings("users", "admins"));
+        assertFalse(permissionManager.canAuthorExtensions("bob"));
+        verify(userManager, times(2)).isUserInGroup("bob", "users");
+    }
+
+    @Test
+    public void testDecisionsExpire()
+    {
+        PermissionManager permissionManager = new PermissionManager(userManager, settingsManager, -1);
+        permissionManager.canAccessSpeakeasy("bob");
+        permissionManager.canAccessSpeakeasy("bob");
+        verify(userManager, times(2)).isUserInGroup("bob", "users");
+    }
+
+    @Test
+    public void testNoUser()
+    {
+        PermissionManager permissionManager = new PermissionManager(userManager, settingsManager);
+        assertFalse(permissionManager.canAccessSpeakeasy(null));
+        assertFalse(permissionManager.canAuthorExtensions(null));
+        assertFalse(permissionManager.canEnableExtensions(null));
+    }
+
+    private static Settings createSettings(String accessGroup, String authorGroup)
+    {
+        Settings settings = new Settings();
+        settings.setAccessGroups(newHashSet(accessGroup));
+        settings.setAuthorGroups(newHashSet(authorGroup));
+        return settings;
+    }
+}
@@ -0,0 +1,166 @@
+package com.atlassian.labs.speakeasy;
+
+import com.atlassian.labs.speakeasy.data.SpeakeasyData;
+import com.atlassian.labs.speakeasy.model.UserPlugins;
+import com.atlassian.plugin.Plugin;
+import com.atlassian.plugin.PluginAccessor;
+import com.atlassian.plugin.PluginInformation;
+import com.google.common.base.Function;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ *
+ */
+public class TestPluginListMatcher
+{
+    private PluginAccessor pluginAccessor;
+    private SpeakeasyData data;
+    private ExtensionClassificationCache classificationCache;
+    private PluginListMatcher matcher;
+
+    @Before
+    public void setUp()
+    {
+        pluginAccessor = mock(PluginAccessor.class);
+        data = mock(SpeakeasyData.class);
+        classificationCache = mock(ExtensionClassificationCache.class);
+        matcher = new PluginListMatcher(pluginAccessor, data, classificationCache);
+    }
+
+    @Test
+    public void testMatchesTextInManifest()
+    {
+        Plugin plugin = mockZipPlugin("foo", "Cool Thing", "Does stuff");
+        assertTrue(matcher.matches(plugin, "bob", new PluginListQuery().text("cool")));
+        assertTrue(matcher.matches(plugin, "bob", new PluginListQuery().text("STUFF")));
+        assertTrue(matcher.matches(plugin, "bob", new PluginListQuery().text("foo")));
+        assertFalse(matcher.matches(plugin, "bob", new PluginListQuery().text("generated")));
+    }
+
+    @Test
+    public void testMatchesTextInPlugin()
+    {
+        Plugin plugin = mockJarPlugin("foo", "Some Plugin", "Does things");
+        assertTrue(matcher.matches(plugin, "bob", new PluginListQuery().text("some")));
+        assertTrue(matcher.matches(plugin, "bob", new PluginListQuery().text("things")));
+        assertFalse(matcher.matches(plugin, "bob", new PluginListQuery().text("stuff")));
+    }
+
+    @Test
+    public void testMatchesFilters()
+    {
+        Plugin plugin = mockJarPlugin("foo", "Foo", null);
+        Plugin fork = mockJarPlugin("foo-fork-bob", "Foo", null);
+        when(data.getPluginAuthor("foo-fork-bob")).thenReturn("bob");
+        when(pluginAccessor.isPluginEnabled("foo")).thenReturn(true);
+        when(data.hasAccess("foo", "bob")).thenReturn(true);
+
+        assertTrue(matcher.matches(fork, "bob", new PluginListQuery().fork(true)));
+        assertFalse(matcher.matches(plugin, "bob", new PluginListQuery().fork(true)));
+        assertTrue(matcher.matches(fork, "bob", new PluginListQuery().author("bob")));
+        assertFalse(matcher.matches(plugin, "bob", new PluginListQuery().author("bob")));
+        assertTrue(matcher.matches(plugin, "bob", new PluginListQuery().enabled(true).available(true)));
+        assertFalse(matcher.matches(fork, "bob", new PluginListQuery().available(true)));
+        assertFalse(matcher.matches(plugin, "jim", new PluginListQuery().enabled(true)));
+    }
+
+    @Test
+    public void testSortsByDisplayNameIgnoringCase()
+    {
+        Plugin zip = mockZipPlugin("a", "banana", null);
+        Plugin jar = mockJarPlugin("b", "Apple", null);
+        Plugin unnamed = mockJarPlugin("cherry", null, null);
+        assertEquals(asList(jar, zip, unnamed), sort(PluginListQuery.Sort.NAME, zip, unnamed, jar));
+    }
+
+    @Test
+    public void testSortsByAuthorThenName()
+    {
+        Plugin first = mockJarPlugin("a", "B", null);
+        Plugin second = mockJarPlugin("b", "A", null);
+        Plugin third = mockJarPlugin("c", "C", null);
+        when(data.getPluginAuthor("a")).thenReturn("bob");
+        when(data.getPluginAuthor("b")).thenReturn("jim");
+        when(data.getPluginAuthor("c")).thenReturn("Jim");
+        assertEquals(asList(first, second, third), sort(PluginListQuery.Sort.AUTHOR, third, second, first));
+    }
+
+    @Test
+    public void testSortsByUsersThenName()
+    {
+        Plugin first = mockJarPlugin("a", "B", null);
+        Plugin second = mockJarPlugin("b", "A", null);
+        Plugin third = mockJarPlugin("c", "C", null);
+        when(data.getUserCount("a")).thenReturn(5);
+        when(data.getUserCount("b")).thenReturn(1);
+        when(data.getUserCount("c")).thenReturn(1);
+        assertEquals(asList(first, second, third), sort(PluginListQuery.Sort.USERS, third, second, first));
+    }
+
+    @Test
+    public void testForksFollowTheirParent()
+    {
+        Plugin foo = mockJarPlugin("foo", "Foo", null);
+        Plugin fooFork = mockJarPlugin("foo-fork-bob", "Alpha", null);
+        Plugin bar = mockJarPlugin("bar", "Zed", null);
+        Plugin orphan = mockJarPlugin("baz-fork-bob", "Beta", null);
+        List<Plugin> sorted = sort(PluginListQuery.Sort.NAME, foo, fooFork, bar, orphan);
+        assertEquals(asList(fooFork, orphan, foo, bar), sorted);
+
+        List<Plugin> grouped = UserPlugins.groupForks(sorted, new Function<Plugin, String>()
+        {
+            public String apply(Plugin from)
+            {
+                return from.getKey();
+            }
+        });
+        assertEquals(asList(foo, fooFork, bar, orphan), grouped);
+    }
+
+    private List<Plugin> sort(PluginListQuery.Sort sort, Plugin... plugins)
+    {
+        List<Plugin> sorted = new ArrayList<Plugin>(asList(plugins));
+        Collections.sort(sorted, matcher.createComparator(sort));
+        return sorted;
+    }
+
+    private Plugin mockZipPlugin(String key, String name, String description)
+    {
+        Plugin plugin = mockPlugin(key, "Generated", "Generated description");
+        when(classificationCache.getClassification(plugin)).thenReturn(
+                new ExtensionClassificationCache.Classification("zip", name, description, true));
+        return plugin;
+    }
+
+    private Plugin mockJarPlugin(String key, String name, String description)
+    {
+        Plugin plugin = mockPlugin(key, name, description);
+        when(classificationCache.getClassification(plugin)).thenReturn(
+                new ExtensionClassificationCache.Classification("jar", null, null, false));
+        return plugin;
+    }
+
+    private Plugin mockPlugin(String key, String name, String description)
+    {
+        Plugin plugin = mock(Plugin.class);
+        when(plugin.getKey()).thenReturn(key);
+        when(plugin.getName()).thenReturn(name);
+        PluginInformation info = new PluginInformation();
+        info.setDescription(description);
+        when(plugin.getPluginInformation()).thenReturn(info);
+        when(classificationCache.getUnresolvedCommonJsDependencies(plugin)).thenReturn(Collections.<String>emptySet());
+        return plugin;
+    }
+}
@@ -0,0 +1,61 @@
+package com.atlassian.labs.speakeasy;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ *
+ */
+public class TestPluginListQuery
+{
+    @Test
+    public void testDefaults()
+    {
+        PluginListQuery query = new PluginListQuery().limit(null).cursor(null).sort(null).text("  ");
+        assertEquals(PluginListQuery.MAX_LIMIT, query.getLimit());
+        assertEquals(0, query.getOffset());
+        assertEquals(PluginListQuery.Sort.NAME, query.getSort());
+        assertNull(query.getText());
+    }
+
+    @Test
+    public void testNextCursor()
+    {
+        PluginListQuery query = new PluginListQuery().limit(10).cursor("20");
+        assertEquals("30", query.getNextCursor(31));
+        assertNull(query.getNextCursor(30));
+    }
+
+    @Test
+    public void testLimitIsCapped()
+    {
+        assertEquals(PluginListQuery.MAX_LIMIT, new PluginListQuery().limit(100000).getLimit());
+        assertEquals(1, new PluginListQuery().limit(0).getLimit());
+    }
+
+    @Test
+    public void testSortIgnoresCase()
+    {
+        assertEquals(PluginListQuery.Sort.USERS, new PluginListQuery().sort("users").getSort());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidSort()
+    {
+        new PluginListQuery().sort("popularity");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidCursor()
+    {
+        new PluginListQuery().cursor("abc");
+    }
+
+    @Test
+    public void testTextIsLowerCased()
+    {
+        assertEquals("foo bar", new PluginListQuery().text(" Foo Bar ").getText());
+    }
+}
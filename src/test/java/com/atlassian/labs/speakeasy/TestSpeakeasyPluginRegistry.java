@@ -0,0 +1,105 @@
+package com.atlassian.labs.speakeasy;
+
+import com.atlassian.plugin.ModuleDescriptor;
+import com.atlassian.plugin.Plugin;
+import com.atlassian.plugin.PluginAccessor;
+import com.atlassian.plugin.event.PluginEventManager;
+import com.atlassian.plugin.event.events.PluginEnabledEvent;
+import com.atlassian.plugin.event.events.PluginModuleEnabledEvent;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ *
+ */
+public class TestSpeakeasyPluginRegistry
+{
+    private PluginAccessor pluginAccessor;
+    private Plugin speakeasyPlugin;
+    private Plugin systemPlugin;
+    private ModuleDescriptor generatorDescriptor;
+
+    @Before
+    public void setUp()
+    {
+        pluginAccessor = mock(PluginAccessor.class);
+        generatorDescriptor = mock(ModuleDescriptor.class, withSettings().extraInterfaces(DescriptorGenerator.class));
+        when(generatorDescriptor.getPluginKey()).thenReturn("ext");
+        speakeasyPlugin = mockPlugin("ext", generatorDescriptor);
+        systemPlugin = mockPlugin("system", mock(ModuleDescriptor.class));
+    }
+
+    @Test
+    public void testInitialScan()
+    {
+        doReturn(asList(speakeasyPlugin, systemPlugin)).when(pluginAccessor).getPlugins();
+        SpeakeasyPluginRegistry registry = new SpeakeasyPluginRegistry(pluginAccessor, mock(PluginEventManager.class));
+        assertEquals(asList("ext"), registry.getPluginKeys());
+    }
+
+    @Test
+    public void testTracksEnabledPlugins()
+    {
+        SpeakeasyPluginRegistry registry = new SpeakeasyPluginRegistry(pluginAccessor, mock(PluginEventManager.class));
+        assertTrue(registry.getPlugins().isEmpty());
+
+        registry.onPluginEnabled(new PluginEnabledEvent(systemPlugin));
+        registry.onPluginEnabled(new PluginEnabledEvent(speakeasyPlugin));
+        assertEquals(asList(speakeasyPlugin), registry.getPlugins());
+    }
+
+    @Test
+    public void testTracksEnabledGeneratorModules()
+    {
+        SpeakeasyPluginRegistry registry = new SpeakeasyPluginRegistry(pluginAccessor, mock(PluginEventManager.class));
+        registry.onPluginModuleEnabled(new PluginModuleEnabledEvent(generatorDescriptor));
+        assertEquals(asList("ext"), registry.getPluginKeys());
+    }
+
+    @Test
+    public void testDropsUninstalledPlugins()
+    {
+        doReturn(asList(speakeasyPlugin)).when(pluginAccessor).getPlugins();
+        SpeakeasyPluginRegistry registry = new SpeakeasyPluginRegistry(pluginAccessor, mock(PluginEventManager.class));
+        when(pluginAccessor.getPlugin("ext")).thenReturn(null);
+        assertTrue(registry.getPluginKeys().isEmpty());
+    }
+
+    @Test
+    public void testDropsPluginsThatNoLongerContainGenerators()
+    {
+        doReturn(asList(speakeasyPlugin)).when(pluginAccessor).getPlugins();
+        SpeakeasyPluginRegistry registry = new SpeakeasyPluginRegistry(pluginAccessor, mock(PluginEventManager.class));
+        doReturn(Collections.emptyList()).when(speakeasyPlugin).getModuleDescriptors();
+        assertTrue(registry.getPluginKeys().isEmpty());
+    }
+
+    @Test
+    public void testIsExtension()
+    {
+        SpeakeasyPluginRegistry registry = new SpeakeasyPluginRegistry(pluginAccessor, mock(PluginEventManager.class));
+        assertTrue(registry.isExtension("ext"));
+        assertFalse(registry.isExtension("system"));
+        assertFalse(registry.isExtension("missing"));
+    }
+
+    private Plugin mockPlugin(String key, ModuleDescriptor descriptor)
+    {
+        Plugin plugin = mock(Plugin.class);
+        when(plugin.getKey()).thenReturn(key);
+        doReturn(asList(descriptor)).when(plugin).getModuleDescriptors();
+        when(pluginAccessor.getPlugin(key)).thenReturn(plugin);
+        return plugin;
+    }
+}
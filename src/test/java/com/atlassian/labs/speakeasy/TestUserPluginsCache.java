@@ -0,0 +1,142 @@
+package com.atlassian.labs.speakeasy;
+
+import com.atlassian.labs.speakeasy.commonjs.descriptor.CommonJsModulesDescriptor;
+import com.atlassian.labs.speakeasy.data.SpeakeasyData;
+import com.atlassian.labs.speakeasy.model.RemotePlugin;
+import com.atlassian.labs.speakeasy.model.Settings;
+import com.atlassian.plugin.ModuleDescriptor;
+import com.atlassian.plugin.Plugin;
+import com.atlassian.plugin.event.PluginEventManager;
+import com.atlassian.plugin.event.events.PluginDisabledEvent;
+import com.atlassian.plugin.event.events.PluginEnabledEvent;
+import com.atlassian.plugin.event.events.PluginModuleDisabledEvent;
+import com.atlassian.plugin.event.events.PluginModuleEnabledEvent;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ *
+ */
+public class TestUserPluginsCache
+{
+    private PluginEventManager pluginEventManager;
+    private SpeakeasyData data;
+    private UserPluginsCache cache;
+    private List<RemotePlugin> plugins;
+
+    @Before
+    public void setUp()
+    {
+        pluginEventManager = mock(PluginEventManager.class);
+        data = mock(SpeakeasyData.class);
+        cache = new UserPluginsCache(pluginEventManager, data);
+        plugins = asList(mock(RemotePlugin.class));
+        cache.put("bob", cache.getGeneration(), plugins);
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        cache.destroy();
+    }
+
+    @Test
+    public void testReturnsCachedView()
+    {
+        assertEquals(plugins, cache.get("bob"));
+        assertNull(cache.get("jim"));
+    }
+
+    @Test
+    public void testListensForDataChanges() throws Exception
+    {
+        verify(pluginEventManager).register(cache);
+        verify(data).addListener(cache);
+        cache.destroy();
+        verify(pluginEventManager).unregister(cache);
+        verify(data).removeListener(cache);
+    }
+
+    @Test
+    public void testInvalidatedByExtensionChange()
+    {
+        cache.onExtensionChanged("foo");
+        assertNull(cache.get("bob"));
+    }
+
+    @Test
+    public void testInvalidatedByImport()
+    {
+        cache.onAllExtensionsChanged();
+        assertNull(cache.get("bob"));
+    }
+
+    @Test
+    public void testInvalidatedBySettings()
+    {
+        when(data.getSettings()).thenReturn("{}");
+        when(data.saveSettings(anyString())).thenReturn("{}");
+        SettingsManager settingsManager = new SettingsManager(data, cache, mock(ExtensionChangeLog.class));
+        cache.put("bob", cache.getGeneration(), plugins);
+
+        settingsManager.setSettings(new Settings());
+        assertNull(cache.get("bob"));
+    }
+
+    @Test
+    public void testInvalidatedByExtensionPluginEvents()
+    {
+        ModuleDescriptor generator = mock(ModuleDescriptor.class, withSettings().extraInterfaces(DescriptorGenerator.class));
+        Plugin plugin = mock(Plugin.class);
+        doReturn(asList(generator)).when(plugin).getModuleDescriptors();
+        cache.onPluginEnabled(new PluginEnabledEvent(plugin));
+        assertNull(cache.get("bob"));
+
+        cache.put("bob", cache.getGeneration(), plugins);
+        cache.onPluginDisabled(new PluginDisabledEvent(plugin));
+        assertNull(cache.get("bob"));
+
+        cache.put("bob", cache.getGeneration(), plugins);
+        cache.onPluginModuleEnabled(new PluginModuleEnabledEvent(generator));
+        assertNull(cache.get("bob"));
+
+        cache.put("bob", cache.getGeneration(), plugins);
+        cache.onPluginModuleDisabled(new PluginModuleDisabledEvent(mock(CommonJsModulesDescriptor.class)));
+        assertNull(cache.get("bob"));
+    }
+
+    @Test
+    public void testIgnoresUnrelatedPluginEvents()
+    {
+        ModuleDescriptor descriptor = mock(ModuleDescriptor.class);
+        Plugin plugin = mock(Plugin.class);
+        doReturn(asList(descriptor)).when(plugin).getModuleDescriptors();
+        cache.onPluginEnabled(new PluginEnabledEvent(plugin));
+        cache.onPluginDisabled(new PluginDisabledEvent(plugin));
+        cache.onPluginModuleEnabled(new PluginModuleEnabledEvent(descriptor));
+        cache.onPluginModuleDisabled(new PluginModuleDisabledEvent(descriptor));
+        assertEquals(plugins, cache.get("bob"));
+    }
+
+    @Test
+    public void testViewBuiltBeforeChangeNotStored()
+    {
+        long generation = cache.getGeneration();
+        cache.onExtensionChanged("foo");
+        cache.put("jim", generation, plugins);
+        assertNull(cache.get("jim"));
+    }
+}
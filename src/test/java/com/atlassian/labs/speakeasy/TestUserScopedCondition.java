@@ -0,0 +1,77 @@
+package com.atlassian.labs.speakeasy;
+
+import com.atlassian.labs.speakeasy.data.external.ExtensionAccessLookup;
+import com.atlassian.labs.speakeasy.usage.external.UsageRecorder;
+import com.atlassian.sal.api.user.UserManager;
+import org.junit.Before;
+import org.junit.Test;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceReference;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ *
+ */
+public class TestUserScopedCondition
+{
+    private UserManager userManager;
+    private ExtensionAccessLookup accessLookup;
+    private UsageRecorder usageRecorder;
+    private UserScopedCondition condition;
+
+    @Before
+    public void setUp()
+    {
+        userManager = mock(UserManager.class);
+        accessLookup = mock(ExtensionAccessLookup.class);
+        usageRecorder = mock(UsageRecorder.class);
+        BundleContext bundleContext = mock(BundleContext.class);
+        registerService(bundleContext, UserManager.class.getName(), userManager);
+        registerService(bundleContext, ExtensionAccessLookup.class.getName(), accessLookup);
+        registerService(bundleContext, UsageRecorder.class.getName(), usageRecorder);
+
+        condition = new UserScopedCondition(bundleContext);
+        condition.init(Collections.singletonMap("pluginKey", "foo"));
+    }
+
+    @Test
+    public void testFollowsLiveAccess()
+    {
+        when(userManager.getRemoteUsername()).thenReturn("bob");
+        assertFalse(condition.shouldDisplay(Collections.<String, Object>emptyMap()));
+
+        when(accessLookup.hasAccess("foo", "bob")).thenReturn(true);
+        assertTrue(condition.shouldDisplay(Collections.<String, Object>emptyMap()));
+        verify(usageRecorder).recordPageLoad("foo");
+    }
+
+    @Test
+    public void testAnonymousUser()
+    {
+        assertFalse(condition.shouldDisplay(Collections.<String, Object>emptyMap()));
+        verify(accessLookup, never()).hasAccess("foo", null);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testAccessServiceMissing()
+    {
+        BundleContext bundleContext = mock(BundleContext.class);
+        registerService(bundleContext, UserManager.class.getName(), userManager);
+        new UserScopedCondition(bundleContext);
+    }
+
+    private static void registerService(BundleContext bundleContext, String name, Object service)
+    {
+        ServiceReference ref = mock(ServiceReference.class);
+        when(bundleContext.getServiceReference(name)).thenReturn(ref);
+        when(bundleContext.getService(ref)).thenReturn(service);
+    }
+}
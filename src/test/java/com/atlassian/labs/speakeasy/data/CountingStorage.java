@@ -0,0 +1,44 @@
+package com.atlassian.labs.speakeasy.data;
+
+/**
+ * Storage kept in memory, counting writes so tests can check how much is persisted, and failing writes on demand
+ */
+public class CountingStorage extends MemoryStorage
+{
+    private volatile int writes;
+    private volatile boolean failing;
+
+    @Override
+    public void put(String key, Object value)
+    {
+        checkFailing(key);
+        writes++;
+        super.put(key, value);
+    }
+
+    @Override
+    public void remove(String key)
+    {
+        checkFailing(key);
+        writes++;
+        super.remove(key);
+    }
+
+    public void setFailing(boolean failing)
+    {
+        this.failing = failing;
+    }
+
+    private void checkFailing(String key)
+    {
+        if (failing)
+        {
+            throw new IllegalStateException("Unable to write '" + key + "'");
+        }
+    }
+
+    public int getWrites()
+    {
+        return writes;
+    }
+}
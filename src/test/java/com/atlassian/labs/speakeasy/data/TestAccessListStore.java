@@ -0,0 +1,87 @@
+package com.atlassian.labs.speakeasy.data;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ *
+ */
+public class TestAccessListStore
+{
+    private CountingStorage storage;
+    private AccessListStore store;
+
+    @Before
+    public void setUp()
+    {
+        storage = new CountingStorage();
+        store = new AccessListStore(storage, new PluginLocks(), 4);
+    }
+
+    @Test
+    public void testReadsExistingList()
+    {
+        storage.put("speakeasy-foo-users", new ArrayList<String>(asList("bob", "jim", "bob")));
+        assertEquals(asList("bob", "jim"), new ArrayList<String>(store.load("foo")));
+    }
+
+    @Test
+    public void testChangesOnlyWriteTheChange()
+    {
+        storage.put("speakeasy-foo-users", new ArrayList<String>(asList("bob", "jim")));
+        int writes = storage.getWrites();
+        store.add("foo", "fred");
+        store.remove("foo", "bob");
+        assertEquals(writes + 4, storage.getWrites());
+        assertEquals(asList("bob", "jim"), storage.get("speakeasy-foo-users"));
+        assertEquals(asList("jim", "fred"), new ArrayList<String>(store.load("foo")));
+    }
+
+    @Test
+    public void testCompactsLog()
+    {
+        store.add("foo", "bob");
+        store.add("foo", "jim");
+        store.remove("foo", "bob");
+        store.add("foo", "fred");
+        assertNull(storage.get("speakeasy-foo-users"));
+        store.compact("foo");
+        assertEquals(asList("jim", "fred"), storage.get("speakeasy-foo-users"));
+        assertNull(storage.get("speakeasy-foo-users-log"));
+        assertNull(storage.get("speakeasy-foo-users-log-0"));
+        assertEquals(asList("jim", "fred"), new ArrayList<String>(store.load("foo")));
+    }
+
+    @Test
+    public void testLeavesShortLogAlone()
+    {
+        store.add("foo", "bob");
+        store.compact("foo");
+        assertNull(storage.get("speakeasy-foo-users"));
+        assertEquals(asList("bob"), new ArrayList<String>(store.load("foo")));
+    }
+
+    @Test
+    public void testIgnoresUnfinishedWrite()
+    {
+        store.add("foo", "bob");
+        storage.put("speakeasy-foo-users-log-1", "+jim");
+        assertEquals(asList("bob"), new ArrayList<String>(store.load("foo")));
+        store.add("foo", "fred");
+        assertEquals(asList("bob", "fred"), new ArrayList<String>(store.load("foo")));
+    }
+
+    @Test
+    public void testSaveReplacesList()
+    {
+        store.add("foo", "bob");
+        store.save("foo", asList("jim"));
+        assertEquals(asList("jim"), new ArrayList<String>(store.load("foo")));
+    }
+}
@@ -0,0 +1,98 @@
+package com.atlassian.labs.speakeasy.data;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static com.google.common.collect.Sets.newHashSet;
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ *
+ */
+public class TestAccessListWriter
+{
+    private CountingStorage storage;
+    private AccessListStore store;
+
+    @Before
+    public void setUp()
+    {
+        storage = new CountingStorage();
+        store = new AccessListStore(storage, new PluginLocks(), 2);
+    }
+
+    @Test
+    public void testWritesChangesStraightAway()
+    {
+        AccessListWriter writer = new AccessListWriter(store, 60 * 1000);
+        writer.add("foo", "bob");
+        writer.add("foo", "jim");
+        writer.remove("foo", "bob");
+        assertEquals(newHashSet("jim"), new AccessListStore(storage, new PluginLocks()).load("foo"));
+        writer.destroy();
+    }
+
+    @Test
+    public void testCompactsWithinWindow()
+    {
+        AccessListWriter writer = new AccessListWriter(store, 60 * 1000);
+        writer.add("foo", "bob");
+        writer.add("foo", "jim");
+        assertNotNull(storage.get("speakeasy-foo-users-log"));
+
+        writer.compact();
+        assertNull(storage.get("speakeasy-foo-users-log"));
+        assertEquals(asList("bob", "jim"), storage.get("speakeasy-foo-users"));
+        writer.destroy();
+    }
+
+    @Test
+    public void testCompactsStraightAwayWithoutWindow()
+    {
+        AccessListWriter writer = new AccessListWriter(store, 0);
+        writer.add("foo", "bob");
+        writer.add("foo", "jim");
+        assertNull(storage.get("speakeasy-foo-users-log"));
+        assertEquals(asList("bob", "jim"), storage.get("speakeasy-foo-users"));
+        writer.destroy();
+    }
+
+    @Test
+    public void testCompactsInBackground() throws Exception
+    {
+        AccessListWriter writer = new AccessListWriter(store, 10);
+        writer.add("foo", "bob");
+        writer.add("foo", "jim");
+        long end = System.currentTimeMillis() + 5000;
+        while (storage.get("speakeasy-foo-users-log") != null && System.currentTimeMillis() < end)
+        {
+            Thread.sleep(10);
+        }
+        assertEquals(asList("bob", "jim"), storage.get("speakeasy-foo-users"));
+        writer.destroy();
+    }
+
+    @Test
+    public void testDestroyCompacts()
+    {
+        AccessListWriter writer = new AccessListWriter(store, 60 * 1000);
+        writer.add("foo", "bob");
+        writer.add("foo", "jim");
+        writer.destroy();
+        assertNull(storage.get("speakeasy-foo-users-log"));
+        assertEquals(newHashSet("bob", "jim"), store.load("foo"));
+    }
+
+    @Test
+    public void testSaveReplacesList()
+    {
+        AccessListWriter writer = new AccessListWriter(store, 60 * 1000);
+        writer.add("foo", "bob");
+        writer.save("foo", asList("jim"));
+        writer.destroy();
+        assertEquals(newHashSet("jim"), store.load("foo"));
+    }
+}
@@ -0,0 +1,79 @@
+package com.atlassian.labs.speakeasy.data;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static com.google.common.collect.Sets.newHashSet;
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ *
+ */
+public class TestExtensionAccessIndex
+{
+    private ExtensionAccessIndex index;
+
+    @Before
+    public void setUp()
+    {
+        index = new ExtensionAccessIndex();
+    }
+
+    @Test
+    public void testPutIndexesBothWays()
+    {
+        index.put("foo", asList("bob", "jim"));
+        index.put("bar", asList("bob"));
+        assertEquals(asList("bob", "jim"), index.getUsers("foo"));
+        assertEquals(newHashSet("foo", "bar"), index.getPluginKeys("bob"));
+        assertEquals(newHashSet("foo"), index.getPluginKeys("jim"));
+        assertTrue(index.hasAccess("bar", "bob"));
+        assertFalse(index.hasAccess("bar", "jim"));
+    }
+
+    @Test
+    public void testPutReplacesUsers()
+    {
+        index.put("foo", asList("bob", "jim"));
+        index.put("foo", asList("jim"));
+        assertEquals(1, index.getUserCount("foo"));
+        assertTrue(index.getPluginKeys("bob").isEmpty());
+        assertEquals(newHashSet("foo"), index.getPluginKeys("jim"));
+    }
+
+    @Test
+    public void testLoadDoesNotOverwrite()
+    {
+        assertFalse(index.isLoaded("foo"));
+        index.put("foo", asList("bob"));
+        index.load("foo", asList("jim"));
+        assertTrue(index.isLoaded("foo"));
+        assertEquals(asList("bob"), index.getUsers("foo"));
+    }
+
+    @Test
+    public void testReturnsCopies()
+    {
+        index.put("foo", asList("bob"));
+        index.getUsers("foo").add("jim");
+        index.getPluginKeys("bob").add("bar");
+        assertEquals(asList("bob"), index.getUsers("foo"));
+        assertEquals(newHashSet("foo"), index.getPluginKeys("bob"));
+    }
+
+    @Test
+    public void testAddAndRemove()
+    {
+        index.put("foo", asList("bob"));
+        assertTrue(index.add("foo", "jim"));
+        assertFalse(index.add("foo", "jim"));
+        assertEquals(newHashSet("foo"), index.getPluginKeys("jim"));
+        assertTrue(index.remove("foo", "bob"));
+        assertFalse(index.remove("foo", "bob"));
+        assertEquals(asList("jim"), index.getUsers("foo"));
+        assertTrue(index.getPluginKeys("bob").isEmpty());
+    }
+}
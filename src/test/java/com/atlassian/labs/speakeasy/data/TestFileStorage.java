@@ -0,0 +1,166 @@
+package com.atlassian.labs.speakeasy.data;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+/**
+ *
+ */
+public class TestFileStorage
+{
+    private File directory;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        directory = File.createTempFile("speakeasy", "storage");
+        directory.delete();
+    }
+
+    @After
+    public void tearDown()
+    {
+        File[] files = directory.listFiles();
+        if (files != null)
+        {
+            for (File file : files)
+            {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void testValuesSurviveReopening() throws IOException
+    {
+        Map<String, String> map = new HashMap<String, String>();
+        map.put("a", "1");
+        FileStorage storage = new FileStorage(directory);
+        storage.put("string", "foo");
+        storage.put("list", new ArrayList<String>(asList("bob", "jim")));
+        storage.put("map", map);
+        storage.put("removed", "bar");
+        storage.remove("removed");
+        storage.close();
+
+        FileStorage reopened = new FileStorage(directory);
+        assertEquals("foo", reopened.get("string"));
+        assertEquals(asList("bob", "jim"), reopened.get("list"));
+        assertEquals(map, reopened.get("map"));
+        assertNull(reopened.get("removed"));
+        reopened.close();
+    }
+
+    @Test
+    public void testValuesAreCopied() throws IOException
+    {
+        FileStorage storage = new FileStorage(directory);
+        List<String> list = new ArrayList<String>(asList("bob"));
+        storage.put("list", list);
+        list.add("jim");
+        ((List<String>) storage.get("list")).add("fred");
+        assertEquals(asList("bob"), storage.get("list"));
+        storage.close();
+    }
+
+    @Test
+    public void testLogCompacted() throws IOException
+    {
+        FileStorage storage = new FileStorage(directory);
+        for (int x = 0; x < FileStorage.MIN_COMPACT_RECORDS; x++)
+        {
+            storage.put("counter", String.valueOf(x));
+        }
+        storage.close();
+        assertEquals(0, new File(directory, "speakeasy.log").length());
+
+        FileStorage reopened = new FileStorage(directory);
+        assertEquals(String.valueOf(FileStorage.MIN_COMPACT_RECORDS - 1), reopened.get("counter"));
+        reopened.close();
+    }
+
+    @Test
+    public void testIncompleteRecordIgnored() throws IOException
+    {
+        FileStorage storage = new FileStorage(directory);
+        storage.put("foo", "bar");
+        storage.close();
+
+        FileOutputStream out = new FileOutputStream(new File(directory, "speakeasy.log"), true);
+        out.write(new byte[] {'P', 0, 0});
+        out.close();
+
+        FileStorage reopened = new FileStorage(directory);
+        assertEquals("bar", reopened.get("foo"));
+        reopened.put("baz", "qux");
+        reopened.close();
+        assertEquals("qux", new FileStorage(directory).get("baz"));
+    }
+
+    @Test
+    public void testUnknownRecordFailsWithoutCompacting() throws IOException
+    {
+        FileStorage storage = new FileStorage(directory);
+        storage.put("foo", "bar");
+        storage.close();
+
+        File logFile = new File(directory, "speakeasy.log");
+        FileOutputStream out = new FileOutputStream(logFile, true);
+        out.write(new byte[] {'X', 0, 0});
+        out.close();
+        long length = logFile.length();
+
+        try
+        {
+            new FileStorage(directory);
+            fail();
+        }
+        catch (IOException ex)
+        {
+            // expected
+        }
+        assertEquals(length, logFile.length());
+    }
+
+    @Test
+    public void testIncompleteSnapshotFailsWithoutCompacting() throws IOException
+    {
+        FileStorage storage = new FileStorage(directory);
+        storage.put("foo", "bar");
+        storage.close();
+        // reopening compacts the log into the snapshot
+        new FileStorage(directory).close();
+
+        File snapshotFile = new File(directory, "speakeasy.dat");
+        FileOutputStream out = new FileOutputStream(snapshotFile, true);
+        out.write(new byte[] {'P', 0, 0});
+        out.close();
+        long length = snapshotFile.length();
+
+        try
+        {
+            new FileStorage(directory);
+            fail();
+        }
+        catch (IOException ex)
+        {
+            // expected
+        }
+        assertEquals(length, snapshotFile.length());
+    }
+}
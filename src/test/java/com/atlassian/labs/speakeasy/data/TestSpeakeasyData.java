@@ -0,0 +1,199 @@
+package com.atlassian.labs.speakeasy.data;
+
+import com.atlassian.labs.speakeasy.usage.external.UsageRecorder;
+import com.atlassian.labs.speakeasy.util.PomProperties;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static com.google.common.collect.Sets.newHashSet;
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ *
+ */
+public class TestSpeakeasyData
+{
+    private CountingStorage storage;
+    private InstalledExtensions installedExtensions;
+    private SpeakeasyData data;
+
+    @Before
+    public void setUp()
+    {
+        storage = new CountingStorage();
+        SpeakeasyStorageFactory storageFactory = mock(SpeakeasyStorageFactory.class);
+        when(storageFactory.getStorage()).thenReturn(storage);
+        installedExtensions = mock(InstalledExtensions.class);
+        data = new SpeakeasyData(storageFactory, mock(PomProperties.class), installedExtensions, mock(UsageRecorder.class));
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        data.destroy();
+    }
+
+    @Test
+    public void testBulkChangesWriteOnce()
+    {
+        data.addUser("foo", "bob");
+        int writes = storage.getWrites();
+
+        Set<String> added = data.addUsers("foo", asList("bob", "jim", "fred"));
+        assertEquals(newHashSet("jim", "fred"), added);
+        assertEquals(writes + 1, storage.getWrites());
+        assertEquals(3, data.getUserCount("foo"));
+
+        Set<String> removed = data.removeUsers("foo", asList("jim", "nobody"));
+        assertEquals(newHashSet("jim"), removed);
+        assertEquals(asList("bob", "fred"), data.getUsersList("foo"));
+    }
+
+    @Test
+    public void testFailedBulkWriteLeavesUsers()
+    {
+        data.addUser("foo", "bob");
+        storage.setFailing(true);
+        try
+        {
+            data.addUsers("foo", asList("jim", "fred"));
+            fail();
+        }
+        catch (IllegalStateException ex)
+        {
+            // expected
+        }
+        try
+        {
+            data.removeUsers("foo", asList("bob"));
+            fail();
+        }
+        catch (IllegalStateException ex)
+        {
+            // expected
+        }
+        storage.setFailing(false);
+        assertEquals(asList("bob"), data.getUsersList("foo"));
+    }
+
+    @Test
+    public void testTellsListenersAboutChanges() throws IOException
+    {
+        ExtensionDataListener listener = mock(ExtensionDataListener.class);
+        data.addListener(listener);
+        data.addUser("foo", "bob");
+        data.setPluginAuthor("bar", "bob");
+        verify(listener).onExtensionChanged("foo");
+        verify(listener).onExtensionChanged("bar");
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        data.exportState(out);
+        data.importState(new ByteArrayInputStream(out.toByteArray()));
+        verify(listener).onAllExtensionsChanged();
+
+        data.removeListener(listener);
+        data.removeUser("foo", "bob");
+        verifyNoMoreInteractions(listener);
+    }
+
+    @Test
+    public void testBulkChangeWithNothingToDo()
+    {
+        data.removeUsers("foo", asList("bob"));
+        assertEquals(0, storage.getWrites());
+    }
+
+    @Test
+    public void testExportAndImport() throws IOException
+    {
+        List<String> users = new ArrayList<String>();
+        for (int x = 0; x < 5000; x++)
+        {
+            users.add("user" + x);
+        }
+        data.saveSettings("{\"allowAdmins\":true}");
+        data.setPluginAuthor("foo", "bob");
+        data.addUsers("foo", users);
+        data.addUser("bar", "jim");
+        when(installedExtensions.getPluginKeys()).thenReturn(asList("foo", "bar"));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        data.exportState(out);
+
+        CountingStorage targetStorage = new CountingStorage();
+        SpeakeasyStorageFactory targetFactory = mock(SpeakeasyStorageFactory.class);
+        when(targetFactory.getStorage()).thenReturn(targetStorage);
+        SpeakeasyData target = new SpeakeasyData(targetFactory, mock(PomProperties.class), mock(InstalledExtensions.class), mock(UsageRecorder.class));
+
+        assertEquals(newHashSet("foo", "bar"), target.importState(new ByteArrayInputStream(out.toByteArray())));
+        assertEquals("{\"allowAdmins\":true}", target.getSettings());
+        assertEquals("bob", target.getPluginAuthor("foo"));
+        assertEquals(null, target.getPluginAuthor("bar"));
+        assertEquals(users, target.getUsersList("foo"));
+        assertEquals(asList("jim"), target.getUsersList("bar"));
+        // the settings, an author and an access list per extension, and nothing per user
+        assertEquals(5, targetStorage.getWrites());
+    }
+
+    @Test
+    public void testImportClearsExtensionsNotInArchive() throws IOException
+    {
+        data.addUser("foo", "jim");
+        when(installedExtensions.getPluginKeys()).thenReturn(asList("foo"));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        data.exportState(out);
+
+        data.setPluginAuthor("bar", "bob");
+        data.addUser("bar", "bob");
+        when(installedExtensions.getPluginKeys()).thenReturn(asList("foo", "bar"));
+
+        assertEquals(newHashSet("foo"), data.importState(new ByteArrayInputStream(out.toByteArray())));
+        assertEquals(asList("jim"), data.getUsersList("foo"));
+        assertNull(data.getPluginAuthor("bar"));
+        assertTrue(data.getUsersList("bar").isEmpty());
+    }
+
+    @Test
+    public void testTruncatedImportChangesNothing() throws IOException
+    {
+        data.saveSettings("{\"allowAdmins\":true}");
+        data.addUser("foo", "jim");
+        when(installedExtensions.getPluginKeys()).thenReturn(asList("foo"));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        data.exportState(out);
+
+        data.saveSettings("{}");
+        data.removeUser("foo", "jim");
+        data.addUser("foo", "bob");
+        int writes = storage.getWrites();
+        byte[] archive = out.toByteArray();
+        try
+        {
+            data.importState(new ByteArrayInputStream(archive, 0, archive.length - 10));
+            fail();
+        }
+        catch (IOException ex)
+        {
+            // expected
+        }
+        assertEquals(writes, storage.getWrites());
+        assertEquals("{}", data.getSettings());
+        assertEquals(asList("bob"), data.getUsersList("foo"));
+    }
+}
@@ -0,0 +1,94 @@
+package com.atlassian.labs.speakeasy.data;
+
+import com.atlassian.labs.speakeasy.usage.external.UsageRecorder;
+import com.atlassian.labs.speakeasy.util.PomProperties;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ *
+ */
+public class TestSpeakeasyDataConcurrency
+{
+    private static final int THREADS = 16;
+    private static final int USERS_PER_THREAD = 200;
+
+    private CountingStorage storage;
+    private SpeakeasyData data;
+
+    @Before
+    public void setUp()
+    {
+        storage = new CountingStorage();
+        SpeakeasyStorageFactory storageFactory = mock(SpeakeasyStorageFactory.class);
+        when(storageFactory.getStorage()).thenReturn(storage);
+        data = new SpeakeasyData(storageFactory, mock(PomProperties.class), mock(InstalledExtensions.class), mock(UsageRecorder.class));
+    }
+
+    @Test
+    public void testConcurrentChangesAreNotLost() throws Exception
+    {
+        final CyclicBarrier start = new CyclicBarrier(THREADS);
+        final CountDownLatch done = new CountDownLatch(THREADS);
+        final List<Throwable> errors = new ArrayList<Throwable>();
+        for (int t = 0; t < THREADS; t++)
+        {
+            final int thread = t;
+            new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        start.await();
+                        for (int x = 0; x < USERS_PER_THREAD; x++)
+                        {
+                            String user = "user-" + thread + "-" + x;
+                            data.addUser("popular", user);
+                            data.addUser("other-" + (x % 8), user);
+                            // toggle a shared user, which must end up where it started
+                            data.addUser("popular", "toggler-" + thread);
+                            data.removeUser("popular", "toggler-" + thread);
+                        }
+                    }
+                    catch (Throwable ex)
+                    {
+                        synchronized (errors)
+                        {
+                            errors.add(ex);
+                        }
+                    }
+                    finally
+                    {
+                        done.countDown();
+                    }
+                }
+            }.start();
+        }
+        done.await();
+        assertTrue(errors.toString(), errors.isEmpty());
+
+        assertEquals(THREADS * USERS_PER_THREAD, data.getUserCount("popular"));
+        data.destroy();
+
+        AccessListStore stored = new AccessListStore(storage, new PluginLocks());
+        assertEquals(THREADS * USERS_PER_THREAD, stored.load("popular").size());
+        int others = 0;
+        for (int x = 0; x < 8; x++)
+        {
+            others += stored.load("other-" + x).size();
+        }
+        assertEquals(THREADS * USERS_PER_THREAD, others);
+    }
+}
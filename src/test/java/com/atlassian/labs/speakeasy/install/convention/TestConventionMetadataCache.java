@@ -0,0 +1,89 @@
+package com.atlassian.labs.speakeasy.install.convention;
+
+import com.atlassian.labs.speakeasy.model.JsonManifest;
+import com.atlassian.plugin.Plugin;
+import org.dom4j.DocumentFactory;
+import org.dom4j.Element;
+import org.junit.Before;
+import org.junit.Test;
+import org.osgi.framework.Bundle;
+
+import java.io.InputStream;
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ *
+ */
+public class TestConventionMetadataCache
+{
+    private JsonManifestHandler jsonManifestHandler;
+    private JsonToElementParser jsonToElementParser;
+    private Plugin plugin;
+    private Bundle bundle;
+    private ConventionMetadataCache cache;
+
+    @Before
+    public void setUp()
+    {
+        jsonManifestHandler = mock(JsonManifestHandler.class);
+        jsonToElementParser = mock(JsonToElementParser.class);
+        plugin = mock(Plugin.class);
+        when(plugin.getKey()).thenReturn("foo");
+        bundle = mock(Bundle.class);
+        when(bundle.getLastModified()).thenReturn(1000L);
+        when(jsonManifestHandler.read(plugin)).thenReturn(new JsonManifest());
+        Element item = DocumentFactory.getInstance().createElement("web-item").addAttribute("key", "bar");
+        when(jsonToElementParser.createWebItems(any(InputStream.class))).thenReturn(asList(item));
+        cache = new ConventionMetadataCache(jsonManifestHandler, jsonToElementParser);
+    }
+
+    @Test
+    public void testManifestParsedOncePerVersion()
+    {
+        JsonManifest first = cache.getManifest(plugin, bundle);
+        assertSame(first, cache.getManifest(plugin, bundle));
+        verify(jsonManifestHandler, times(1)).read(plugin);
+
+        when(bundle.getLastModified()).thenReturn(2000L);
+        cache.getManifest(plugin, bundle);
+        verify(jsonManifestHandler, times(2)).read(plugin);
+    }
+
+    @Test
+    public void testManifestNotCachedWithoutBundle()
+    {
+        cache.getManifest(plugin, null);
+        cache.getManifest(plugin, null);
+        verify(jsonManifestHandler, times(2)).read(plugin);
+    }
+
+    @Test
+    public void testWebItemsAreCopies()
+    {
+        List<Element> first = cache.getWebItems(plugin, bundle);
+        List<Element> second = cache.getWebItems(plugin, bundle);
+        assertEquals(1, second.size());
+        assertEquals("bar", second.get(0).attributeValue("key"));
+        assertNotSame(first.get(0), second.get(0));
+        verify(jsonToElementParser, times(1)).createWebItems(any(InputStream.class));
+    }
+
+    @Test
+    public void testEvict()
+    {
+        cache.getManifest(plugin, bundle);
+        cache.evict("foo");
+        cache.getManifest(plugin, bundle);
+        verify(jsonManifestHandler, times(2)).read(plugin);
+    }
+}
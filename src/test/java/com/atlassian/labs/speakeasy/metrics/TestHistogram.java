@@ -0,0 +1,53 @@
+package com.atlassian.labs.speakeasy.metrics;
+
+import com.atlassian.labs.speakeasy.model.TimerStatistics;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ *
+ */
+public class TestHistogram
+{
+    @Test
+    public void testEmpty()
+    {
+        Histogram histogram = new Histogram("foo");
+        assertEquals(0, histogram.getPercentile(50));
+        assertEquals(0, histogram.getPercentile(99));
+        assertEquals(0, histogram.getCount());
+    }
+
+    @Test
+    public void testPercentiles()
+    {
+        Histogram histogram = new Histogram("foo");
+        for (int x = 100; x > 0; x--)
+        {
+            histogram.record(x);
+        }
+        assertEquals(50, histogram.getPercentile(50));
+        assertEquals(99, histogram.getPercentile(99));
+        assertEquals(100, histogram.getPercentile(100));
+        assertEquals(1, histogram.getPercentile(0));
+    }
+
+    @Test
+    public void testOnlyRecentSamplesKept()
+    {
+        Histogram histogram = new Histogram("foo", 10);
+        histogram.record(1000);
+        for (int x = 0; x < 10; x++)
+        {
+            histogram.record(5);
+        }
+        assertEquals(5, histogram.getPercentile(99));
+
+        TimerStatistics stats = histogram.getStatistics();
+        assertEquals("foo", stats.getName());
+        assertEquals(11, stats.getCount());
+        assertEquals(1000, stats.getMax());
+        assertEquals(5, stats.getP50());
+    }
+}
@@ -0,0 +1,56 @@
+package com.atlassian.labs.speakeasy.metrics;
+
+import com.atlassian.labs.speakeasy.model.MetricsReport;
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ *
+ */
+public class TestSpeakeasyMetrics
+{
+    @Test
+    public void testReport()
+    {
+        SpeakeasyMetrics metrics = new SpeakeasyMetrics(null);
+        metrics.recordRegistration();
+        metrics.recordRegistration();
+        metrics.recordFailure();
+        metrics.servicesChanged(3);
+        metrics.servicesChanged(-1);
+        metrics.recordInstall(10, true);
+        metrics.recordInstall(20, false);
+        metrics.recordGeneration(7);
+
+        MetricsReport report = metrics.getReport();
+        assertEquals(2, report.getRegistrations());
+        assertEquals(1, report.getFailures());
+        assertEquals(2, report.getRegisteredServices());
+        assertEquals(1, report.getInstallFailures());
+        assertEquals(4, report.getTimers().size());
+        assertEquals("generation", report.getTimers().get(0).getName());
+        assertEquals(7, report.getTimers().get(0).getP99());
+        assertEquals(2, metrics.getInstalls());
+        assertEquals(20, metrics.getInstallP99());
+    }
+
+    @Test
+    public void testExposedOverJmx() throws Exception
+    {
+        MBeanServer server = MBeanServerFactory.newMBeanServer();
+        SpeakeasyMetrics metrics = new SpeakeasyMetrics(server);
+        metrics.recordRegistration();
+
+        ObjectName name = new ObjectName(SpeakeasyMetrics.OBJECT_NAME);
+        assertEquals(1L, server.getAttribute(name, "Registrations"));
+
+        metrics.destroy();
+        assertFalse(server.isRegistered(name));
+    }
+}
@@ -0,0 +1,196 @@
+package com.atlassian.labs.speakeasy.notification;
+
+import com.atlassian.labs.speakeasy.product.ProductAccessor;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ *
+ */
+public class TestNotificationQueue
+{
+    private MailSink mailSink;
+
+    @Before
+    public void setUp()
+    {
+        mailSink = new MailSink();
+    }
+
+    @Test
+    public void testSendsEachNotificationWithoutWindow() throws Exception
+    {
+        NotificationQueue queue = new NotificationQueue(mailSink, 0);
+        queue.submit(new TestNotification("bob", "enabled", "foo"));
+        queue.submit(new TestNotification("bob", "forked", "bar"));
+        mailSink.waitFor(2);
+        queue.destroy();
+
+        assertEquals(2, mailSink.sent.size());
+        assertEquals("email/enabled-subject.vm", mailSink.sent.get(0).subjectTemplate);
+        assertEquals("foo", mailSink.sent.get(0).context.get("name"));
+        assertEquals("email/forked-body.vm", mailSink.sent.get(1).bodyTemplate);
+    }
+
+    @Test
+    public void testCoalescesNotificationsWithinWindow() throws Exception
+    {
+        NotificationQueue queue = new NotificationQueue(mailSink, 60000);
+        queue.submit(new TestNotification("bob", "enabled", "foo"));
+        mailSink.waitFor(1);
+
+        queue.submit(new TestNotification("bob", "enabled", "bar"));
+        queue.submit(new TestNotification("bob", "forked", "baz"));
+        queue.submit(new TestNotification("jim", "enabled", "foo"));
+        mailSink.waitFor(2);
+        queue.destroy();
+
+        assertEquals(3, mailSink.sent.size());
+        assertEquals("jim", mailSink.sent.get(1).to);
+        SentEmail digest = mailSink.sent.get(2);
+        assertEquals("bob", digest.to);
+        assertEquals("email/digest-subject.vm", digest.subjectTemplate);
+        assertEquals(2, digest.context.get("total"));
+        List<Map<String, Object>> entries = (List<Map<String, Object>>) digest.context.get("entries");
+        assertEquals("bar", entries.get(0).get("name"));
+        assertEquals("forked", entries.get(1).get("type"));
+    }
+
+    @Test
+    public void testSkipsNotificationsThatFail() throws Exception
+    {
+        NotificationQueue queue = new NotificationQueue(mailSink, 0);
+        queue.submit(new Notification("bob", "enabled")
+        {
+            public Map<String, Object> createContext() throws Exception
+            {
+                throw new IllegalStateException("Plugin went away");
+            }
+        });
+        queue.submit(new TestNotification("bob", "enabled", "foo"));
+        mailSink.waitFor(1);
+        queue.destroy();
+
+        assertEquals(1, mailSink.sent.size());
+    }
+
+    @Test
+    public void testCarriesOnAfterFailedSend() throws Exception
+    {
+        NotificationQueue queue = new NotificationQueue(mailSink, 0);
+        queue.submit(new TestNotification("nobody", "enabled", "foo"));
+        queue.submit(new TestNotification("bob", "enabled", "foo"));
+        mailSink.waitFor(1);
+        queue.destroy();
+
+        assertEquals(1, mailSink.sent.size());
+        assertEquals("bob", mailSink.sent.get(0).to);
+    }
+
+    @Test
+    public void testForgetsRecipientsOutsideWindow() throws Exception
+    {
+        NotificationQueue queue = new NotificationQueue(mailSink, 50);
+        queue.submit(new TestNotification("bob", "enabled", "foo"));
+        mailSink.waitFor(1);
+        Thread.sleep(100);
+        queue.submit(new TestNotification("jim", "enabled", "foo"));
+        mailSink.waitFor(2);
+        queue.destroy();
+
+        assertEquals(2, mailSink.sent.size());
+        assertEquals(1, queue.getTrackedRecipientCount());
+    }
+
+    private static class TestNotification extends Notification
+    {
+        private final String name;
+
+        public TestNotification(String recipient, String type, String name)
+        {
+            super(recipient, type);
+            this.name = name;
+        }
+
+        public Map<String, Object> createContext()
+        {
+            return Collections.<String, Object>singletonMap("name", name);
+        }
+    }
+
+    private static class SentEmail
+    {
+        private final String to;
+        private final String subjectTemplate;
+        private final String bodyTemplate;
+        private final Map<String, Object> context;
+
+        public SentEmail(String to, String subjectTemplate, String bodyTemplate, Map<String, Object> context)
+        {
+            this.to = to;
+            this.subjectTemplate = subjectTemplate;
+            this.bodyTemplate = bodyTemplate;
+            this.context = context;
+        }
+    }
+
+    private static class MailSink implements ProductAccessor
+    {
+        private final List<SentEmail> sent = Collections.synchronizedList(new ArrayList<SentEmail>());
+
+        public void sendEmail(String toUsername, String subjectTemplate, String bodyTemplate, Map<String, Object> context)
+        {
+            if ("nobody".equals(toUsername))
+            {
+                throw new IllegalArgumentException("No such user");
+            }
+            sent.add(new SentEmail(toUsername, subjectTemplate, bodyTemplate, context));
+        }
+
+        public void waitFor(int count) throws InterruptedException
+        {
+            for (int x = 0; x < 50 && sent.size() < count; x++)
+            {
+                Thread.sleep(100);
+            }
+        }
+
+        public String getSdkName()
+        {
+            return "test";
+        }
+
+        public String getVersion()
+        {
+            return "1";
+        }
+
+        public String getDataVersion()
+        {
+            return "1";
+        }
+
+        public String getUserFullName(String username)
+        {
+            return username;
+        }
+
+        public String getProfilePath()
+        {
+            return "/profile";
+        }
+
+        public Collection<String> getGroupMembers(String groupName)
+        {
+            return null;
+        }
+    }
+}
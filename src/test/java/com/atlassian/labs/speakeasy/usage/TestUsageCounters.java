@@ -0,0 +1,134 @@
+package com.atlassian.labs.speakeasy.usage;
+
+import com.atlassian.labs.speakeasy.data.CountingStorage;
+import com.atlassian.labs.speakeasy.model.ExtensionUsage;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ *
+ */
+public class TestUsageCounters
+{
+    private CountingStorage storage;
+    private UsageCounters counters;
+
+    @Before
+    public void setUp()
+    {
+        storage = new CountingStorage();
+        counters = new UsageCounters(storage, 0);
+    }
+
+    @Test
+    public void testCountsOnlyWrittenOnFlush()
+    {
+        counters.recordEnable("foo", 2);
+        counters.recordDisable("foo", 1);
+        recordPageLoad("foo");
+        counters.recordDownload("foo");
+        assertEquals(0, storage.getWrites());
+        assertUsage(counters.getUsage("foo"), 2, 1, 1, 1);
+
+        counters.flush();
+        assertEquals(1, storage.getWrites());
+        assertUsage(new UsageCounters(storage, 0).getUsage("foo"), 2, 1, 1, 1);
+    }
+
+    @Test
+    public void testFlushAddsToStoredTotals()
+    {
+        recordPageLoad("foo");
+        counters.flush();
+        recordPageLoad("foo");
+        counters.flush();
+        counters.flush();
+        assertEquals(2, storage.getWrites());
+        assertUsage(counters.getUsage("foo"), 0, 0, 2, 0);
+        assertUsage(counters.getUsage("bar"), 0, 0, 0, 0);
+    }
+
+    @Test
+    public void testPageLoadCountedOncePerRequest()
+    {
+        counters.recordPageLoad("foo");
+        assertUsage(counters.getUsage("foo"), 0, 0, 0, 0);
+
+        assertTrue(counters.startRequest());
+        assertFalse(counters.startRequest());
+        counters.recordPageLoad("foo");
+        counters.recordPageLoad("foo");
+        counters.recordPageLoad("bar");
+        counters.endRequest();
+        assertUsage(counters.getUsage("foo"), 0, 0, 1, 0);
+        assertUsage(counters.getUsage("bar"), 0, 0, 1, 0);
+
+        recordPageLoad("foo");
+        assertUsage(counters.getUsage("foo"), 0, 0, 2, 0);
+    }
+
+    @Test
+    public void testDestroyFlushes()
+    {
+        counters.recordDownload("foo");
+        counters.destroy();
+        assertUsage(new UsageCounters(storage, 0).getUsage("foo"), 0, 0, 0, 1);
+    }
+
+    @Test
+    public void testConcurrentCountsAreNotLost() throws Exception
+    {
+        final int threads = 8;
+        final int loads = 1000;
+        final CountDownLatch done = new CountDownLatch(threads);
+        for (int x = 0; x < threads; x++)
+        {
+            new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    for (int y = 0; y < loads; y++)
+                    {
+                        recordPageLoad("foo");
+                        if (y % 100 == 0)
+                        {
+                            counters.flush();
+                        }
+                    }
+                    done.countDown();
+                }
+            }.start();
+        }
+        done.await();
+        counters.flush();
+        assertUsage(counters.getUsage("foo"), 0, 0, threads * loads, 0);
+    }
+
+    private void recordPageLoad(String pluginKey)
+    {
+        counters.startRequest();
+        try
+        {
+            counters.recordPageLoad(pluginKey);
+        }
+        finally
+        {
+            counters.endRequest();
+        }
+    }
+
+    private static void assertUsage(ExtensionUsage usage, long enables, long disables, long pageLoads, long downloads)
+    {
+        assertEquals(enables, usage.getEnables());
+        assertEquals(disables, usage.getDisables());
+        assertEquals(pageLoads, usage.getPageLoads());
+        assertEquals(downloads, usage.getDownloads());
+    }
+}
@@ -0,0 +1,192 @@
+package com.atlassian.labs.speakeasy.util;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ *
+ */
+public class TestKeyedSerialExecutor
+{
+    private KeyedSerialExecutor executor;
+
+    @Before
+    public void setUp()
+    {
+        executor = new KeyedSerialExecutor("test", 4);
+    }
+
+    @After
+    public void tearDown()
+    {
+        executor.shutdown();
+    }
+
+    @Test
+    public void testSameKeyRunsInOrder() throws Exception
+    {
+        final List<Integer> order = Collections.synchronizedList(new ArrayList<Integer>());
+        List<Future<Object>> futures = newArrayList();
+        for (int x = 0; x < 100; x++)
+        {
+            final int value = x;
+            futures.add(executor.submit("foo", new Callable<Object>()
+            {
+                public Object call() throws Exception
+                {
+                    order.add(value);
+                    return null;
+                }
+            }));
+        }
+        for (Future<Object> future : futures)
+        {
+            future.get(10, TimeUnit.SECONDS);
+        }
+        assertEquals(100, order.size());
+        for (int x = 0; x < 100; x++)
+        {
+            assertEquals(Integer.valueOf(x), order.get(x));
+        }
+    }
+
+    @Test
+    public void testDifferentKeysRunInParallel() throws Exception
+    {
+        final CountDownLatch bothStarted = new CountDownLatch(2);
+        Callable<Boolean> task = new Callable<Boolean>()
+        {
+            public Boolean call() throws Exception
+            {
+                bothStarted.countDown();
+                return bothStarted.await(10, TimeUnit.SECONDS);
+            }
+        };
+        Future<Boolean> foo = executor.submit("foo", task);
+        Future<Boolean> bar = executor.submit("bar", task);
+        assertTrue(foo.get(10, TimeUnit.SECONDS));
+        assertTrue(bar.get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testSameKeyWaitsForEarlierTask() throws Exception
+    {
+        final CountDownLatch release = new CountDownLatch(1);
+        executor.submit("foo", new Callable<Object>()
+        {
+            public Object call() throws Exception
+            {
+                release.await(10, TimeUnit.SECONDS);
+                return null;
+            }
+        });
+        Future<String> second = executor.submit("foo", new Callable<String>()
+        {
+            public String call() throws Exception
+            {
+                return "done";
+            }
+        });
+        Thread.sleep(100);
+        assertFalse(second.isDone());
+        release.countDown();
+        assertEquals("done", second.get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testIsExecutorThread() throws Exception
+    {
+        assertFalse(executor.isExecutorThread());
+        assertFalse(executor.isRunning("foo"));
+        Future<Boolean> result = executor.submit("foo", new Callable<Boolean>()
+        {
+            public Boolean call() throws Exception
+            {
+                return executor.isExecutorThread() && executor.isRunning("foo") && !executor.isRunning("bar");
+            }
+        });
+        assertTrue(result.get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testCallOrSubmitRunsInlineWhenIdle() throws Exception
+    {
+        final Thread caller = Thread.currentThread();
+        Future<Boolean> result = executor.callOrSubmit("foo", new Callable<Boolean>()
+        {
+            public Boolean call() throws Exception
+            {
+                return Thread.currentThread() == caller && executor.isRunning("foo");
+            }
+        });
+        assertTrue(result.isDone());
+        assertTrue(result.get());
+        assertFalse(executor.isExecutorThread());
+    }
+
+    @Test
+    public void testCallOrSubmitDoesntWaitForBusyKey() throws Exception
+    {
+        final CountDownLatch release = new CountDownLatch(1);
+        executor.submit("foo", new Callable<Object>()
+        {
+            public Object call() throws Exception
+            {
+                release.await(10, TimeUnit.SECONDS);
+                return null;
+            }
+        });
+        Future<String> second = executor.callOrSubmit("foo", new Callable<String>()
+        {
+            public String call() throws Exception
+            {
+                return "done";
+            }
+        });
+        assertFalse(second.isDone());
+        release.countDown();
+        assertEquals("done", second.get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testShutdownCancelsQueuedTasks() throws Exception
+    {
+        final CountDownLatch started = new CountDownLatch(1);
+        executor.submit("foo", new Callable<Object>()
+        {
+            public Object call() throws Exception
+            {
+                started.countDown();
+                new CountDownLatch(1).await(10, TimeUnit.SECONDS);
+                return null;
+            }
+        });
+        Callable<Object> task = new Callable<Object>()
+        {
+            public Object call() throws Exception
+            {
+                return null;
+            }
+        };
+        Future<Object> queued = executor.submit("foo", task);
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+
+        executor.shutdown();
+        assertTrue(queued.isCancelled());
+        assertTrue(executor.submit("bar", task).isCancelled());
+    }
+}
@@ -505,14 +505,8 @@ public class TestUserProfile
 
     private void assertEmailExists(String to, String title, List<String> bodyStrings) throws MessagingException, IOException
     {
-        SmtpMessage lastMessage = null;
+        SmtpMessage lastMessage = waitForEmail("[test] " + title, bodyStrings);
         assertTrue(mailServer.getReceivedEmailSize() > 0);
-
-        Iterator itr = mailServer.getReceivedEmail();
-        while(itr.hasNext())
-        {
-            lastMessage = (SmtpMessage) itr.next();
-        }
         assertNotNull(lastMessage);
         log.error("msg: " + lastMessage.toString());
         String subject = lastMessage.getHeaderValue("Subject");
@@ -530,6 +524,46 @@ public class TestUserProfile
 
 
 
+    private SmtpMessage waitForEmail(String subject, List<String> bodyStrings)
+    {
+        // notifications are sent in the background, so give them a moment to arrive
+        SmtpMessage lastMessage = null;
+        for (int x = 0; x < 50; x++)
+        {
+            Iterator itr = mailServer.getReceivedEmail();
+            while(itr.hasNext())
+            {
+                lastMessage = (SmtpMessage) itr.next();
+            }
+            if (lastMessage != null && subject.equals(lastMessage.getHeaderValue("Subject"))
+                    && containsAll(lastMessage.getBody(), bodyStrings))
+            {
+                break;
+            }
+            try
+            {
+                Thread.sleep(200);
+            }
+            catch (InterruptedException e)
+            {
+                break;
+            }
+        }
+        return lastMessage;
+    }
+
+    private boolean containsAll(String body, List<String> bodyStrings)
+    {
+        for (String toMatch : bodyStrings)
+        {
+            if (!body.contains(toMatch))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
     private Set<String> getZipEntries(File artifact) throws IOException
     {
         Set<String> entries = newHashSet();